@@ -0,0 +1,4 @@
+#!/bin/bash
+# lets db-replica stream the WAL; the entrypoint only runs this on a fresh webflux_data volume
+set -e
+echo "host replication all all md5" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,105 @@
+package com.marcosmoreira.webflux.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcosmoreira.webflux.config.CodecConfig;
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.support.DefaultServerCodecConfigurer;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//the JSON encoder and decoder WebFlux uses for AnimeDomain, configured the same way as CodecConfig does it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnimeCodecBenchmark {
+
+    private static final ResolvableType ANIME_TYPE = ResolvableType.forClass(AnimeDomain.class);
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private Jackson2JsonEncoder encoder;
+    private Jackson2JsonDecoder decoder;
+    private AnimeDomain anime;
+    private List<AnimeDomain> catalog;
+    private byte[] animeJson;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ServerCodecConfigurer configurer = ServerCodecConfigurer.create();
+        new CodecConfig().ndjsonCodecCustomizer(objectMapper).customize(configurer);
+        encoder = (Jackson2JsonEncoder) configurer.getWriters().stream()
+                .filter(writer -> writer instanceof EncoderHttpMessageWriter)
+                .map(writer -> ((EncoderHttpMessageWriter<?>) writer).getEncoder())
+                .filter(Jackson2JsonEncoder.class::isInstance)
+                .findFirst()
+                .orElseThrow();
+        decoder = new Jackson2JsonDecoder(objectMapper);
+
+        anime = new AnimeDomain(1, "Nome de um anime", 0L);
+        catalog = StubAnimeRepository.animes(100);
+        animeJson = "{\"id\":1,\"name\":\"Nome de um anime\"}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int encodeAnime() {
+        DataBuffer buffer = encoder.encodeValue(anime, bufferFactory, ANIME_TYPE, MediaType.APPLICATION_JSON,
+                Collections.emptyMap());
+        return release(buffer);
+    }
+
+    @Benchmark
+    public AnimeDomain decodeAnime() {
+        return (AnimeDomain) decoder.decode(bufferFactory.wrap(animeJson), ANIME_TYPE, MediaType.APPLICATION_JSON,
+                Collections.emptyMap());
+    }
+
+    @Benchmark
+    public long encodeCatalogAsJsonArray() {
+        return encodeCatalog(MediaType.APPLICATION_JSON);
+    }
+
+    @Benchmark
+    public long encodeCatalogAsNdjson() {
+        return encodeCatalog(CodecConfig.APPLICATION_NDJSON);
+    }
+
+    private long encodeCatalog(MediaType mediaType) {
+        return encoder.encode(Flux.fromIterable(catalog), bufferFactory, ANIME_TYPE, mediaType, Collections.emptyMap())
+                .map(AnimeCodecBenchmark::release)
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+    private static int release(DataBuffer buffer) {
+        int size = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return size;
+    }
+}
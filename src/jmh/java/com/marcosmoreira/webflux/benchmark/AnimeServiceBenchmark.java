@@ -0,0 +1,70 @@
+package com.marcosmoreira.webflux.benchmark;
+
+import com.marcosmoreira.webflux.cache.AnimeCache;
+import com.marcosmoreira.webflux.cache.AnimeNameIndex;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.AnimePage;
+import com.marcosmoreira.webflux.service.AnimeService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnimeServiceBenchmark {
+
+    private AnimeService animeService;
+    private AnimeCache animeCache;
+    private List<AnimeDomain> batch;
+
+    @Setup
+    public void setup() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeCache = new AnimeCache(animeProperties, new SimpleMeterRegistry());
+        animeService = new AnimeService(StubAnimeRepository.create(StubAnimeRepository.animes(100)),
+                animeProperties, animeCache, new AnimeNameIndex(new SimpleMeterRegistry()));
+        batch = StubAnimeRepository.animes(1_000);
+    }
+
+    @Benchmark
+    public AnimeDomain findByIdCached() {
+        return animeService.findById(1).block();
+    }
+
+    @Benchmark
+    public AnimeDomain findByIdMiss() {
+        animeCache.evict(1);
+        return animeService.findById(1).block();
+    }
+
+    @Benchmark
+    public List<AnimeDomain> findAll() {
+        return animeService.findAll().collectList().block();
+    }
+
+    @Benchmark
+    public AnimePage findPage() {
+        return animeService.findPage(null, 20).block();
+    }
+
+    @Benchmark
+    public List<AnimeDomain> saveAll() {
+        return animeService.saveAll(batch).collectList().block();
+    }
+}
@@ -0,0 +1,76 @@
+package com.marcosmoreira.webflux.benchmark;
+
+import com.marcosmoreira.webflux.domain.DevDojoUserDomain;
+import com.marcosmoreira.webflux.security.RoleAuthorizationManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorityReactiveAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//run with -prof gc to compare the allocation rate of the split-per-call baseline with the precomputed authorities
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthoritiesBenchmark {
+
+    private static final String AUTHORITIES = "ROLE_USER,ROLE_ADMIN";
+
+    private DevDojoUserDomain user;
+    private Mono<Authentication> authentication;
+    private AuthorityReactiveAuthorizationManager<AuthorizationContext> springHasRole;
+    private RoleAuthorizationManager hasRole;
+
+    @Setup
+    public void setup() {
+        user = new DevDojoUserDomain(1, "Marcos", "marcos", "{noop}devdojo", AUTHORITIES);
+        authentication = Mono.just(new UsernamePasswordAuthenticationToken(user, user.getPassword(),
+                user.getAuthorities()));
+        springHasRole = AuthorityReactiveAuthorizationManager.hasRole("ADMIN");
+        hasRole = RoleAuthorizationManager.hasRole("ADMIN");
+    }
+
+    //what DevDojoUserDomain.getAuthorities() used to do on every call
+    @Benchmark
+    public Collection<? extends GrantedAuthority> splitAuthoritiesBaseline() {
+        return Arrays.stream(AUTHORITIES.split(","))
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return user.getAuthorities();
+    }
+
+    @Benchmark
+    public AuthorizationDecision springHasRole() {
+        return springHasRole.check(authentication, null).block();
+    }
+
+    @Benchmark
+    public AuthorizationDecision roleAuthorizationManager() {
+        return hasRole.check(authentication, null).block();
+    }
+}
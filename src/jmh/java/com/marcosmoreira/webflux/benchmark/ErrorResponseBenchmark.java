@@ -0,0 +1,54 @@
+package com.marcosmoreira.webflux.benchmark;
+
+import com.marcosmoreira.webflux.exception.CustomAttributes;
+import com.marcosmoreira.webflux.exception.GlobalExceptionHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.web.ResourceProperties;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+
+//GlobalExceptionHandler.formatErrorResponse through the public handle() entry point, body written to a mock response
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorResponseBenchmark {
+
+    private GlobalExceptionHandler globalExceptionHandler;
+    private ResponseStatusException notFound;
+
+    @Setup
+    public void setup() throws Exception {
+        GenericApplicationContext applicationContext = new GenericApplicationContext();
+        applicationContext.refresh();
+
+        globalExceptionHandler = new GlobalExceptionHandler(new CustomAttributes(), new ResourceProperties(),
+                applicationContext, ServerCodecConfigurer.create());
+        globalExceptionHandler.afterPropertiesSet();
+        notFound = new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found");
+    }
+
+    @Benchmark
+    public HttpStatus formatErrorResponse() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/1"));
+        globalExceptionHandler.handle(exchange, notFound).block();
+        return exchange.getResponse().getStatusCode();
+    }
+}
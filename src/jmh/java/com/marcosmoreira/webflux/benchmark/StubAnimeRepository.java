@@ -0,0 +1,50 @@
+package com.marcosmoreira.webflux.benchmark;
+
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.repository.AnimeRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+//answers from memory so the benchmarks measure the service pipelines and not a database or a mocking library
+final class StubAnimeRepository {
+
+    private StubAnimeRepository() {
+    }
+
+    static List<AnimeDomain> animes(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(id -> AnimeDomain.builder().id(id).name("Anime " + id).version(0L).build())
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    static AnimeRepository create(List<AnimeDomain> animes) {
+        return (AnimeRepository) Proxy.newProxyInstance(AnimeRepository.class.getClassLoader(),
+                new Class<?>[]{AnimeRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findById":
+                            return Mono.just(animes.get(0));
+                        case "findAll":
+                        case "streamAll":
+                            return Flux.fromIterable(animes);
+                        case "findPageAfter":
+                            int limit = (int) args[1];
+                            return Flux.fromIterable(animes.subList(0, Math.min(limit, animes.size())));
+                        case "save":
+                            return Mono.just(((AnimeDomain) args[0]).withId(1));
+                        case "insertAll":
+                            return Flux.fromIterable((List<AnimeDomain>) args[0])
+                                    .index((index, anime) -> anime.withId(index.intValue() + 1));
+                        case "toString":
+                            return "StubAnimeRepository";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,174 @@
+package com.marcosmoreira.webflux.load;
+
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.TokenResponse;
+import lombok.RequiredArgsConstructor;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop driver: every worker sends its next request as soon as the previous one completes,
+ * so latency is measured per request and throughput is whatever the app sustains at that concurrency.
+ */
+@RequiredArgsConstructor
+class LoadDriver {
+
+    enum Operation {
+        GET_BY_ID(60), GET_PAGE(10), POST(15), PUT(10), DELETE(5);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        static Operation pick() {
+            int roll = ThreadLocalRandom.current().nextInt(100);
+            for (Operation operation : values()) {
+                roll -= operation.weight;
+                if (roll < 0) {
+                    return operation;
+                }
+            }
+            return GET_BY_ID;
+        }
+    }
+
+    //fixed range, an auto-resizing recorder takes a lock on the netty thread that BlockHound rejects
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final WebClient webClient;
+    private final List<Integer> seededIds;
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    //ids created by this run, DELETE only removes these so the seeded catalog stays intact
+    private final Queue<Integer> created = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private List<String> authorizations;
+
+    void authenticate(List<String> usernames, String password, boolean token) {
+        authorizations = Flux.fromIterable(usernames)
+                .concatMap(username -> token ? requestToken(username, password) : Mono.just(basic(username, password)))
+                .collectList()
+                .block();
+    }
+
+    void warmup(Duration duration, int concurrency) {
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_LATENCY_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+        drive(duration, concurrency);
+    }
+
+    LoadResult measure(Duration duration, int concurrency) {
+        //drops everything recorded during warmup
+        recorders.values().forEach(Recorder::getIntervalHistogram);
+        errors.values().forEach(LongAdder::reset);
+
+        long start = System.nanoTime();
+        drive(duration, concurrency);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        Map<Operation, Long> errorCounts = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, recorders.get(operation).getIntervalHistogram());
+            errorCounts.put(operation, errors.get(operation).sum());
+        }
+        return new LoadResult(elapsed, concurrency, histograms, errorCounts);
+    }
+
+    private void drive(Duration duration, int concurrency) {
+        long deadline = System.nanoTime() + duration.toNanos();
+        Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(this::next).repeat(() -> System.nanoTime() < deadline), concurrency)
+                .blockLast();
+    }
+
+    private Mono<Void> next() {
+        Operation operation = Operation.pick();
+        Integer toDelete = operation == Operation.DELETE ? created.poll() : null;
+        if (operation == Operation.DELETE && toDelete == null) {
+            operation = Operation.POST;
+        }
+        Operation recorded = operation;
+        long start = System.nanoTime();
+
+        return send(operation, toDelete)
+                .doOnSuccess(ignored -> record(recorded, start))
+                .onErrorResume(error -> {
+                    errors.get(recorded).increment();
+                    record(recorded, start);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> send(Operation operation, Integer toDelete) {
+        String authorization = authorizations.get(ThreadLocalRandom.current().nextInt(authorizations.size()));
+        switch (operation) {
+            case GET_BY_ID:
+                return webClient.get().uri("/animes/{id}", randomSeededId())
+                        .header(HttpHeaders.AUTHORIZATION, authorization)
+                        .retrieve().toBodilessEntity().then();
+            case GET_PAGE:
+                return webClient.get().uri("/animes/page?size=20")
+                        .header(HttpHeaders.AUTHORIZATION, authorization)
+                        .retrieve().toBodilessEntity().then();
+            case POST:
+                return webClient.post().uri("/animes")
+                        .header(HttpHeaders.AUTHORIZATION, authorization)
+                        .bodyValue(AnimeDomain.builder().name("Load anime " + sequence.incrementAndGet()).build())
+                        .retrieve().bodyToMono(AnimeDomain.class)
+                        .doOnNext(anime -> created.offer(anime.getId()))
+                        .then();
+            case PUT:
+                return webClient.put().uri("/animes/{id}", randomSeededId())
+                        .header(HttpHeaders.AUTHORIZATION, authorization)
+                        .bodyValue(AnimeDomain.builder().name("Load anime " + sequence.incrementAndGet()).build())
+                        .retrieve().toBodilessEntity().then();
+            default:
+                return webClient.delete().uri("/animes/{id}", toDelete)
+                        .header(HttpHeaders.AUTHORIZATION, authorization)
+                        .retrieve().toBodilessEntity().then();
+        }
+    }
+
+    private void record(Operation operation, long start) {
+        long micros = (System.nanoTime() - start) / 1_000;
+        recorders.get(operation).recordValue(Math.min(micros, HIGHEST_LATENCY_MICROS));
+    }
+
+    private int randomSeededId() {
+        return seededIds.get(ThreadLocalRandom.current().nextInt(seededIds.size()));
+    }
+
+    private Mono<String> requestToken(String username, String password) {
+        return webClient.post().uri("/auth/token")
+                .bodyValue(Map.of("username", username, "password", password))
+                .retrieve().bodyToMono(TokenResponse.class)
+                .map(response -> "Bearer " + response.getAccessToken());
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + HttpHeaders.encodeBasicAuth(username, password, StandardCharsets.UTF_8);
+    }
+}
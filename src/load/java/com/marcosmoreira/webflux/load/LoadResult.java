@@ -0,0 +1,47 @@
+package com.marcosmoreira.webflux.load;
+
+import com.marcosmoreira.webflux.load.LoadDriver.Operation;
+import lombok.RequiredArgsConstructor;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RequiredArgsConstructor
+class LoadResult {
+
+    private final Duration elapsed;
+    private final int concurrency;
+    private final Map<Operation, Histogram> histograms;
+    private final Map<Operation, Long> errors;
+
+    String format() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d workers for %ds%n%n", concurrency, elapsed.toSeconds()));
+        report.append(String.format("%-10s %10s %8s %10s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        for (Map.Entry<Operation, Histogram> entry : histograms.entrySet()) {
+            long operationErrors = errors.get(entry.getKey());
+            report.append(line(entry.getKey().name(), entry.getValue(), operationErrors));
+            total.add(entry.getValue());
+            totalErrors += operationErrors;
+        }
+        report.append(line("TOTAL", total, totalErrors));
+        return report.toString();
+    }
+
+    private String line(String name, Histogram histogram, long errorCount) {
+        double seconds = elapsed.toNanos() / 1e9;
+        return String.format("%-10s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                name, histogram.getTotalCount(), errorCount, histogram.getTotalCount() / seconds,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1_000.0;
+    }
+}
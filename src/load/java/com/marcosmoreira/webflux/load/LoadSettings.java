@@ -0,0 +1,42 @@
+package com.marcosmoreira.webflux.load;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+
+@Getter
+@RequiredArgsConstructor
+class LoadSettings {
+
+    private final Duration warmup;
+    private final Duration duration;
+    private final int concurrency;
+    private final int users;
+    private final int seedAnimes;
+    private final boolean tokenAuthentication;
+    private final String target; //empty to boot the app against an embedded postgres
+    private final String username; //only used with target, embedded runs create their own users
+    private final String password;
+    private final String report;
+    private final String config;
+
+    static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                Duration.parse(System.getProperty("load.warmup", "PT15S")),
+                Duration.parse(System.getProperty("load.duration", "PT60S")),
+                Integer.getInteger("load.concurrency", 64),
+                Integer.getInteger("load.users", 8),
+                Integer.getInteger("load.seedAnimes", 10_000),
+                "token".equals(System.getProperty("load.auth", "basic")),
+                System.getProperty("load.target", ""),
+                System.getProperty("load.username", "marcos"),
+                System.getProperty("load.password", "devdojo"),
+                System.getProperty("load.report", "target/load-report.txt"),
+                System.getProperty("load.config", "src/main/resources/application.yml"));
+    }
+
+    boolean isEmbedded() {
+        return target.isBlank();
+    }
+}
@@ -0,0 +1,120 @@
+package com.marcosmoreira.webflux.load;
+
+import com.marcosmoreira.webflux.WebfluxApplication;
+import com.marcosmoreira.webflux.cache.AnimeNameIndex;
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.DevDojoUserDomain;
+import com.marcosmoreira.webflux.repository.AnimeRepository;
+import com.marcosmoreira.webflux.repository.DevDojoUserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Boots the app against an embedded postgres, seeds users and animes, drives mixed traffic with
+ * {@link LoadDriver} and prints throughput, latency percentiles and connection pool saturation.
+ * With -Dload.target it only drives an app that is already running, e.g. the docker-compose one.
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final String PASSWORD = "devdojo";
+
+    public static void main(String[] args) throws IOException {
+        //the app's own install, but done before any other thread exists, attaching
+        //the agent later from inside the context startup hangs
+        WebfluxApplication.installBlockHound();
+        LoadSettings settings = LoadSettings.fromSystemProperties();
+
+        if (!settings.isEmbedded()) {
+            LoadDriver driver = new LoadDriver(WebClient.create(settings.getTarget()), seededIds(settings));
+            driver.authenticate(List.of(settings.getUsername()), settings.getPassword(), settings.isTokenAuthentication());
+            driver.warmup(settings.getWarmup(), settings.getConcurrency());
+            report(settings, driver.measure(settings.getDuration(), settings.getConcurrency()).format()
+                    + "\nconnection pool not sampled, the app runs in another process\n");
+            return;
+        }
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start();
+             ConfigurableApplicationContext context = start(postgres, settings)) {
+            List<String> usernames = seedUsers(context, settings.getUsers());
+            List<Integer> seededIds = seedAnimes(context, settings.getSeedAnimes());
+
+            String port = context.getEnvironment().getProperty("local.server.port");
+            LoadDriver driver = new LoadDriver(WebClient.create("http://localhost:" + port), seededIds);
+            driver.authenticate(usernames, PASSWORD, settings.isTokenAuthentication());
+            driver.warmup(settings.getWarmup(), settings.getConcurrency());
+
+            PoolSampler poolSampler = new PoolSampler(context.getBean(MeterRegistry.class));
+            poolSampler.start();
+            LoadResult result = driver.measure(settings.getDuration(), settings.getConcurrency());
+            report(settings, result.format() + poolSampler.stop());
+        }
+    }
+
+    private static ConfigurableApplicationContext start(EmbeddedPostgres postgres, LoadSettings settings) {
+        //devtools would restart the app in a new classloader and hand back a context the driver can't reach
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        //arguments rather than builder properties, those are defaults and application.yml would win over them
+        //the test classpath puts src/test/resources/application.yml first, the main one has to be added explicitly
+        return new SpringApplicationBuilder(WebfluxApplication.class).run(
+                "--spring.config.additional-location=file:" + settings.getConfig(),
+                "--spring.r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres?schema=anime",
+                "--spring.r2dbc.username=postgres",
+                "--spring.r2dbc.password=postgres",
+                "--server.port=0",
+                "--anime.schema.migrate=true",
+                "--anime.security.token.enabled=" + settings.isTokenAuthentication(),
+                //a handful of seeded users stands in for many clients, so the per-user limit must not cap the run
+                "--anime.rate-limit.default-limit.requests-per-second=100000",
+                "--anime.rate-limit.default-limit.burst=100000");
+    }
+
+    private static List<String> seedUsers(ConfigurableApplicationContext context, int count) {
+        String password = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        return Flux.range(1, count)
+                .map(index -> new DevDojoUserDomain(null, "Load user " + index, "load-user-" + index, password,
+                        "ROLE_USER,ROLE_ADMIN"))
+                .concatMap(context.getBean(DevDojoUserRepository.class)::save)
+                .map(DevDojoUserDomain::getUsername)
+                .collectList()
+                .block();
+    }
+
+    private static List<Integer> seedAnimes(ConfigurableApplicationContext context, int count) {
+        List<AnimeDomain> animes = IntStream.rangeClosed(1, count)
+                .mapToObj(index -> AnimeDomain.builder().name("Seeded anime " + index).build())
+                .collect(Collectors.toList());
+        //seeding bypasses the service, so the name index loaded at startup has to be fed directly
+        return context.getBean(AnimeRepository.class).insertAll(animes, 500)
+                .doOnNext(context.getBean(AnimeNameIndex.class)::put)
+                .map(AnimeDomain::getId)
+                .collectList()
+                .block();
+    }
+
+    //against an external app the catalog is assumed to already hold ids 1..seedAnimes
+    private static List<Integer> seededIds(LoadSettings settings) {
+        return IntStream.rangeClosed(1, settings.getSeedAnimes()).boxed().collect(Collectors.toList());
+    }
+
+    private static void report(LoadSettings settings, String report) throws IOException {
+        log.info("Load test finished\n{}", report);
+        Path file = Path.of(settings.getReport());
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, report, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+package com.marcosmoreira.webflux.load;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.DoubleSummaryStatistics;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+//polls the r2dbc.pool.* gauges while load runs; pending > 0 or acquired == max.allocated means the pool is saturated
+@RequiredArgsConstructor
+class PoolSampler {
+
+    private static final String POOL_METRICS = "r2dbc.pool";
+
+    private final MeterRegistry meterRegistry;
+
+    //only touched from the single interval thread until stop() returns
+    private final Map<String, DoubleSummaryStatistics> samples = new TreeMap<>();
+    private Disposable sampling;
+
+    void start() {
+        sampling = Flux.interval(Duration.ofMillis(500))
+                .subscribe(tick -> sample());
+    }
+
+    String stop() {
+        sampling.dispose();
+        if (samples.isEmpty()) {
+            return "no " + POOL_METRICS + " metrics found, is the connection pool enabled?\n";
+        }
+
+        StringBuilder report = new StringBuilder(String.format("%n%-28s %8s %8s%n", "pool gauge", "mean", "max"));
+        samples.forEach((name, statistics) -> report.append(String.format("%-28s %8.1f %8.0f%n",
+                name, statistics.getAverage(), statistics.getMax())));
+
+        Timer acquire = meterRegistry.find(POOL_METRICS + ".acquire").tag("outcome", "success").timer();
+        if (acquire != null) {
+            report.append(String.format("%-28s %8.2f %8.2f (ms, %d acquires since startup)%n", POOL_METRICS + ".acquire",
+                    acquire.mean(TimeUnit.MILLISECONDS), acquire.max(TimeUnit.MILLISECONDS), acquire.count()));
+        }
+        return report.toString();
+    }
+
+    private void sample() {
+        meterRegistry.getMeters().stream()
+                .filter(meter -> meter instanceof Gauge)
+                .filter(meter -> meter.getId().getName().startsWith(POOL_METRICS))
+                .forEach(meter -> samples.computeIfAbsent(meter.getId().getName(), name -> new DoubleSummaryStatistics())
+                        .accept(((Gauge) meter).value()));
+    }
+}
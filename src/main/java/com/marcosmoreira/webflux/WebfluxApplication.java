@@ -9,8 +9,15 @@ import reactor.blockhound.BlockHound;
 public class WebfluxApplication {
 
     static {
+        installBlockHound();
+    }
+
+    //only the first install takes effect, so anything starting the app early must go through here too
+    public static void installBlockHound() {
         BlockHound.install(
             builder -> builder.allowBlockingCallsInside("java.util.UUID", "randomUUID")
+                //the first calls through a @Transactional proxy generate its FastClass once, racing event loops wait
+                .allowBlockingCallsInside("org.springframework.cglib.core.internal.LoadingCache", "createEntry")
         );
     }
 
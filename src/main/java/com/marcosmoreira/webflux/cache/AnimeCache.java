@@ -0,0 +1,18 @@
+package com.marcosmoreira.webflux.cache;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AnimeCache extends ReactiveCache<Integer, AnimeDomain> {
+
+    public AnimeCache(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        super("anime", animeProperties.getCache(), meterRegistry);
+    }
+
+    public void put(AnimeDomain animeDomain) {
+        put(animeDomain.getId(), animeDomain);
+    }
+}
@@ -0,0 +1,404 @@
+package com.marcosmoreira.webflux.cache;
+
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Every anime name, sorted by its normalized form, so that a prefix lookup is a binary search instead of a
+ * database query. The bulk lives in an immutable snapshot of packed arrays, about 12 bytes plus the UTF-8 name
+ * per anime; writes go to a small skip list overlay that is merged into a new snapshot in the background once
+ * it reaches an eighth of the snapshot. Kept current by the services, filled once at startup by
+ * AnimeNameIndexLoader.
+ */
+@Component
+public class AnimeNameIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    //the skip list node with its share of index nodes, the id map node, the Integer and the Key of an overlay entry
+    private static final int OVERLAY_ENTRY_BYTES = 200;
+    private static final int MIN_COMPACTION_THRESHOLD = 4_096;
+
+    private volatile State state = new State(Snapshot.EMPTY, null, new Layer());
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    //a plain thread rather than a reactor one: compact() spin-waits, which BlockHound rejects on non-blocking threads
+    private final Scheduler compactor = Schedulers.fromExecutorService(Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "anime-name-index");
+        thread.setDaemon(true);
+        return thread;
+    }));
+
+    //rows read by the startup load, by id so a retried load does not index an anime twice
+    private final Map<Integer, String> loading = new HashMap<>();
+    private volatile boolean loaded;
+
+    public AnimeNameIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("anime.name.index.size", this, AnimeNameIndex::size)
+                .description("Anime names held by the in-memory suggest index")
+                .register(meterRegistry);
+        Gauge.builder("anime.name.index.memory", this, AnimeNameIndex::estimatedBytes)
+                .description("Estimated heap used by the in-memory suggest index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void put(AnimeDomain animeDomain) {
+        write(animeDomain.getId(), new Key(normalize(animeDomain.getName()), animeDomain.getId()),
+                animeDomain.getName());
+    }
+
+    public void remove(int id) {
+        write(id, null, null);
+    }
+
+    public List<AnimeDomain> suggest(String prefix, int limit) {
+        State current = state;
+        String normalized = normalize(prefix);
+        Layer active = current.active;
+        Layer frozen = current.frozen;
+
+        List<Cursor> cursors = new ArrayList<>(3);
+        cursors.add(new LayerCursor(active, normalized, id -> false));
+        if (frozen != null) {
+            cursors.add(new LayerCursor(frozen, normalized, active::supersedes));
+        }
+        cursors.add(new SnapshotCursor(current.base, normalized,
+                id -> active.supersedes(id) || (frozen != null && frozen.supersedes(id))));
+
+        List<AnimeDomain> suggestions = new ArrayList<>(Math.min(limit, 64));
+        Cursor next;
+        while (suggestions.size() < limit && (next = first(cursors)) != null) {
+            suggestions.add(AnimeDomain.builder().id(next.key.id).name(next.name).build());
+            next.advance();
+        }
+        return suggestions;
+    }
+
+    void load(AnimeDomain animeDomain) {
+        loading.put(animeDomain.getId(), animeDomain.getName());
+    }
+
+    //anything written while the load ran sits in the overlay and supersedes what the load read
+    void markLoaded() {
+        List<Map.Entry<Key, String>> entries = new ArrayList<>(loading.size());
+        loading.forEach((id, name) -> entries.add(Map.entry(new Key(normalize(name), id), name)));
+        loading.clear();
+        entries.sort(Map.Entry.comparingByKey());
+
+        Snapshot.Builder builder = new Snapshot.Builder(entries.size());
+        entries.forEach(entry -> builder.add(entry.getKey().id, entry.getValue()));
+        state = new State(builder.build(), null, state.active);
+        loaded = true;
+    }
+
+    //freezes the overlay, waits for writers still inside it and merges it with the snapshot; runs on one thread
+    void compact() {
+        try {
+            State current = state;
+            Layer frozen = current.active;
+            state = new State(current.base, frozen, new Layer());
+            frozen.frozen = true;
+            while (frozen.writers.get() > 0) {
+                Thread.onSpinWait();
+            }
+
+            Cursor fromFrozen = new LayerCursor(frozen, "", id -> false);
+            Cursor fromBase = new SnapshotCursor(current.base, "", frozen::supersedes);
+            Snapshot.Builder builder = new Snapshot.Builder(current.base.size() + frozen.entries.size());
+            Cursor next;
+            while ((next = first(List.of(fromFrozen, fromBase))) != null) {
+                builder.add(next.key.id, next.name);
+                next.advance();
+            }
+            state = new State(builder.build(), null, state.active);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private void write(int id, Key key, String name) {
+        while (true) {
+            Layer layer = state.active;
+            layer.writers.incrementAndGet();
+            try {
+                //frozen by a compaction that already published the overlay replacing it, so retry there
+                if (!layer.frozen) {
+                    layer.write(id, key, name);
+                    break;
+                }
+            } finally {
+                layer.writers.decrementAndGet();
+            }
+        }
+
+        State current = state;
+        if (loaded && current.active.superseded.size() > Math.max(MIN_COMPACTION_THRESHOLD, current.base.size() / 8)
+                && compacting.compareAndSet(false, true)) {
+            compactor.schedule(this::compact);
+        }
+    }
+
+    private int size() {
+        State current = state;
+        Set<Integer> hiddenInBase = new HashSet<>(current.active.superseded);
+        int size = current.active.keys.size();
+        if (current.frozen != null) {
+            hiddenInBase.addAll(current.frozen.superseded);
+            size += (int) current.frozen.keys.keySet().stream().filter(id -> !current.active.supersedes(id)).count();
+        }
+        return size + current.base.size() - (int) hiddenInBase.stream().filter(current.base::contains).count();
+    }
+
+    private long estimatedBytes() {
+        State current = state;
+        long overlay = current.active.estimatedBytes() + (current.frozen == null ? 0 : current.frozen.estimatedBytes());
+        return current.base.estimatedBytes() + overlay;
+    }
+
+    static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name.strip(), Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    //the cursor with the lowest key, cursors never share an id so there are no ties
+    private static Cursor first(List<Cursor> cursors) {
+        Cursor first = null;
+        for (Cursor cursor : cursors) {
+            if (cursor.key != null && (first == null || cursor.key.compareTo(first.key) < 0)) {
+                first = cursor;
+            }
+        }
+        return first;
+    }
+
+    private static final class State {
+        private final Snapshot base;
+        private final Layer frozen; //set only while a compaction merges it into the next base
+        private final Layer active;
+
+        private State(Snapshot base, Layer frozen, Layer active) {
+            this.base = base;
+            this.frozen = frozen;
+            this.active = active;
+        }
+    }
+
+    private static final class Key implements Comparable<Key> {
+        private final String normalized;
+        private final int id;
+
+        private Key(String normalized, int id) {
+            this.normalized = normalized;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byName = normalized.compareTo(other.normalized);
+            return byName != 0 ? byName : Integer.compare(id, other.id);
+        }
+    }
+
+    //names written since the last compaction; superseded holds every id written here, hiding older entries
+    private static final class Layer {
+        private final ConcurrentSkipListMap<Key, String> entries = new ConcurrentSkipListMap<>();
+        private final Map<Integer, Key> keys = new ConcurrentHashMap<>();
+        private final Set<Integer> superseded = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger writers = new AtomicInteger();
+        private volatile boolean frozen;
+
+        //per id, so an update racing a delete of the same anime can't leave a stale name behind
+        private void write(int id, Key key, String name) {
+            keys.compute(id, (ignored, previous) -> {
+                if (previous != null) {
+                    entries.remove(previous);
+                }
+                superseded.add(id);
+                if (key == null) {
+                    return null;
+                }
+                entries.put(key, name);
+                return key;
+            });
+        }
+
+        private boolean supersedes(int id) {
+            return superseded.contains(id);
+        }
+
+        private long estimatedBytes() {
+            return entries.entrySet().stream()
+                    .mapToLong(entry -> OVERLAY_ENTRY_BYTES + entry.getKey().normalized.length()
+                            + entry.getValue().length())
+                    .sum();
+        }
+    }
+
+    //names packed back to back as UTF-8 in name order, offsets[i] to offsets[i + 1] is the name of ids[i]
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(new int[0], new int[]{0}, new byte[0]);
+
+        private final int[] ids;
+        private final int[] offsets;
+        private final byte[] names;
+        private final int[] sortedIds;
+
+        private Snapshot(int[] ids, int[] offsets, byte[] names) {
+            this.ids = ids;
+            this.offsets = offsets;
+            this.names = names;
+            this.sortedIds = ids.clone();
+            Arrays.sort(sortedIds);
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        private String name(int index) {
+            return new String(names, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+        }
+
+        private boolean contains(int id) {
+            return Arrays.binarySearch(sortedIds, id) >= 0;
+        }
+
+        //first position whose normalized name is not below the prefix; normalizes about log2(size) names
+        private int lowerBound(String normalizedPrefix) {
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (normalize(name(middle)).compareTo(normalizedPrefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private long estimatedBytes() {
+            return 4L * ids.length + 4L * (offsets.length - 1) + names.length + 4L * sortedIds.length;
+        }
+
+        private static final class Builder {
+            private final int[] ids;
+            private final int[] offsets;
+            private final ByteArrayOutputStream names = new ByteArrayOutputStream();
+            private int size;
+
+            private Builder(int capacity) {
+                this.ids = new int[capacity];
+                this.offsets = new int[capacity + 1];
+            }
+
+            private void add(int id, String name) {
+                names.writeBytes(name.getBytes(StandardCharsets.UTF_8));
+                ids[size] = id;
+                offsets[++size] = names.size();
+            }
+
+            private Snapshot build() {
+                return new Snapshot(Arrays.copyOf(ids, size), Arrays.copyOf(offsets, size + 1), names.toByteArray());
+            }
+        }
+    }
+
+    private abstract static class Cursor {
+        protected Key key;
+        protected String name;
+
+        //moves to the next visible entry under the prefix, key is null once there is none
+        protected abstract void advance();
+    }
+
+    private static final class LayerCursor extends Cursor {
+        private final Iterator<Map.Entry<Key, String>> entries;
+        private final String prefix;
+        private final IntPredicate hidden;
+
+        private LayerCursor(Layer layer, String prefix, IntPredicate hidden) {
+            this.entries = layer.entries.tailMap(new Key(prefix, Integer.MIN_VALUE)).entrySet().iterator();
+            this.prefix = prefix;
+            this.hidden = hidden;
+            advance();
+        }
+
+        @Override
+        protected void advance() {
+            while (entries.hasNext()) {
+                Map.Entry<Key, String> entry = entries.next();
+                if (!entry.getKey().normalized.startsWith(prefix)) {
+                    break;
+                }
+                if (!hidden.test(entry.getKey().id)) {
+                    key = entry.getKey();
+                    name = entry.getValue();
+                    return;
+                }
+            }
+            key = null;
+        }
+    }
+
+    private static final class SnapshotCursor extends Cursor {
+        private final Snapshot snapshot;
+        private final String prefix;
+        private final IntPredicate hidden;
+        private int position;
+
+        private SnapshotCursor(Snapshot snapshot, String prefix, IntPredicate hidden) {
+            this.snapshot = snapshot;
+            this.prefix = prefix;
+            this.hidden = hidden;
+            this.position = prefix.isEmpty() ? 0 : snapshot.lowerBound(prefix);
+            advance();
+        }
+
+        @Override
+        protected void advance() {
+            while (position < snapshot.size()) {
+                int index = position++;
+                String candidate = snapshot.name(index);
+                String normalized = normalize(candidate);
+                if (!normalized.startsWith(prefix)) {
+                    break;
+                }
+                if (!hidden.test(snapshot.ids[index])) {
+                    key = new Key(normalized, snapshot.ids[index]);
+                    name = candidate;
+                    return;
+                }
+            }
+            key = null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.marcosmoreira.webflux.cache;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.repository.AnimeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+//fills AnimeNameIndex in the background, suggest answers 503 until it is done
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnimeNameIndexLoader {
+
+    private final AnimeRepository animeRepository;
+    private final AnimeNameIndex animeNameIndex;
+    private final AnimeProperties animeProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        animeRepository.streamAll(animeProperties.getStream().getFetchSize())
+                .doOnNext(animeNameIndex::load)
+                .count()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .doBeforeRetry(signal -> log.warn("Loading the anime name index failed, retrying",
+                                signal.failure())))
+                .subscribe(count -> {
+                    animeNameIndex.markLoaded();
+                    log.info("Anime name index loaded with {} names in {} ms", count,
+                            Duration.ofNanos(System.nanoTime() - start).toMillis());
+                });
+    }
+}
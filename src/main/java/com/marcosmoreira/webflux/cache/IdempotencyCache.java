@@ -0,0 +1,74 @@
+package com.marcosmoreira.webflux.cache;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of a write per Idempotency-Key so a retried request gets the first response back
+ * instead of inserting again. Keys are scoped to the caller and kept in memory only, so a retry that lands
+ * on another node is executed again. The request is compared with equals, so it must be a value type that the
+ * action does not modify.
+ */
+@Component
+public class IdempotencyCache {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final ReactiveCache<String, Replay> cache;
+
+    public IdempotencyCache(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        //weighed by the animes a replay holds, a full batch keeps its request and response alive for the whole ttl
+        this.cache = new ReactiveCache<>("idempotency", animeProperties.getIdempotency(),
+                (scopedKey, replay) -> size(replay.getRequest()) + size(replay.getResponse()), meterRegistry);
+    }
+
+    //a request without a key runs as usual; retries with the key share the future of the first execution,
+    //even while it is still running, and a failed execution is not kept so it can be retried
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> execute(Principal principal, String key, String operation, Object request,
+                               Supplier<Mono<T>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid " + HEADER));
+        }
+
+        return cache.get(scope(principal, key), scopedKey -> action.get()
+                .map(response -> new Replay(operation, request, response)))
+                .map(replay -> {
+                    if (!replay.getOperation().equals(operation) || !replay.getRequest().equals(request)) {
+                        throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                                HEADER + " was already used for a different request");
+                    }
+                    return (T) replay.getResponse();
+                });
+    }
+
+    private static int size(Object value) {
+        return value instanceof Collection ? ((Collection<?>) value).size() : 1;
+    }
+
+    private static String scope(Principal principal, String key) {
+        return (principal == null ? "" : principal.getName()) + '\0' + key;
+    }
+
+    //the request itself rather than a hash of it, so two different bodies can never collide on one key
+    @Value
+    private static class Replay {
+        String operation;
+        Object request;
+        Object response;
+    }
+}
@@ -0,0 +1,56 @@
+package com.marcosmoreira.webflux.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Caffeine async cache sized and expired from AnimeProperties.Cache, with its statistics published under the
+ * given name. Concurrent misses for the same key share one load.
+ */
+public class ReactiveCache<K, V> {
+
+    private final AsyncCache<K, V> cache;
+
+    public ReactiveCache(String name, AnimeProperties.Cache properties, MeterRegistry meterRegistry) {
+        this(name, properties, null, meterRegistry);
+    }
+
+    //with a weigher maximumSize caps the total weight of the entries instead of their number
+    public ReactiveCache(String name, AnimeProperties.Cache properties, Weigher<K, V> weigher,
+                         MeterRegistry meterRegistry) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats();
+        this.cache = weigher == null
+                ? builder.maximumSize(properties.getMaximumSize()).buildAsync()
+                : builder.maximumWeight(properties.getMaximumSize()).weigher(weigher).buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), name);
+    }
+
+    //concurrent misses for the same key share the future of the first loader, a failed load is not kept
+    //copy() so that one cancelled subscriber does not cancel the shared load for the others
+    public Mono<V> get(K key, Function<K, Mono<V>> loader) {
+        return Mono.fromFuture(() -> cache.get(key, (missing, executor) -> loader.apply(missing).toFuture()).copy());
+    }
+
+    public void put(K key, V value) {
+        cache.put(key, CompletableFuture.completedFuture(value));
+    }
+
+    public void evict(K key) {
+        cache.synchronous().invalidate(key);
+    }
+
+    public void evictAll() {
+        cache.synchronous().invalidateAll();
+    }
+}
@@ -0,0 +1,14 @@
+package com.marcosmoreira.webflux.cache;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserDetailsCache extends ReactiveCache<String, UserDetails> {
+
+    public UserDetailsCache(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        super("user-details", animeProperties.getSecurity().getUserCache(), meterRegistry);
+    }
+}
@@ -0,0 +1,26 @@
+package com.marcosmoreira.webflux.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+//lets operators drop cached users after changing devdojo_user rows outside the application
+@Component
+@Endpoint(id = "usercache")
+@RequiredArgsConstructor
+public class UserDetailsCacheEndpoint {
+
+    private final UserDetailsCache userDetailsCache;
+
+    @DeleteOperation
+    public void evictAll() {
+        userDetailsCache.evictAll();
+    }
+
+    @DeleteOperation
+    public void evict(@Selector String username) {
+        userDetailsCache.evict(username);
+    }
+}
@@ -0,0 +1,204 @@
+package com.marcosmoreira.webflux.config;
+
+import io.r2dbc.spi.ValidationDepth;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "anime")
+public class AnimeProperties {
+
+    private Page page = new Page();
+    private Stream stream = new Stream();
+    private Batch batch = new Batch();
+    private Search search = new Search();
+    private Suggest suggest = new Suggest();
+    private Cache cache = new Cache();
+    //responses replayed for an Idempotency-Key, maximumSize counts the animes in the requests and responses kept
+    private Cache idempotency = new Cache(10_000, Duration.ofHours(24));
+    private Security security = new Security();
+    private Schema schema = new Schema();
+    private R2dbc r2dbc = new R2dbc();
+    private RateLimit rateLimit = new RateLimit();
+    private Resilience resilience = new Resilience();
+    private Ingest ingest = new Ingest();
+
+    @Data
+    public static class Page {
+        private int defaultSize = 20;
+        private int maxSize = 500;
+    }
+
+    @Data
+    public static class Stream {
+        private int fetchSize = 256;
+    }
+
+    @Data
+    public static class Search {
+        private int minLength = 3; //shorter terms have no trigram to look up and would scan the table
+        private int defaultLimit = 20;
+        private int maxLimit = 100;
+    }
+
+    @Data
+    public static class Suggest {
+        private int defaultLimit = 10;
+        private int maxLimit = 50;
+    }
+
+    @Data
+    public static class Batch {
+        private int chunkSize = 500;
+        private int maxSize = 1000; //ids or animes accepted by one bulk update or delete
+    }
+
+    //see AnimeIngestService; a flush happens when batchSize animes are queued or every flushInterval
+    @Data
+    public static class Ingest {
+        private int capacity = 10_000; //queued animes beyond this are rejected with 429
+        private int batchSize = 500;
+        private Duration flushInterval = Duration.ofMillis(100);
+        private Cache status = new Cache(100_000, Duration.ofMinutes(10)); //how long a tracking id can be looked up
+    }
+
+    //see RateLimitWebFilter; limits apply per caller and route, the in-flight cap to the whole node
+    @Data
+    public static class RateLimit {
+        private boolean enabled = true;
+        private int maxInFlight = 256;
+        private Duration idleTimeout = Duration.ofMinutes(10); //buckets not used for this long are dropped
+        private long maxBuckets = 100_000; //least recently used callers are dropped beyond this
+        private Limit defaultLimit = new Limit(50, 100);
+        //listAll reads the whole table, a client polling it should use If-None-Match instead; 304s are not charged
+        private List<RouteLimit> routes = new ArrayList<>(List.of(new RouteLimit(HttpMethod.GET, "/animes", 1, 5)));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private double requestsPerSecond;
+        private int burst;
+    }
+
+    //path is matched after numeric segments are replaced with {id}, e.g. /animes/{id}
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RouteLimit {
+        private HttpMethod method;
+        private String path;
+        private double requestsPerSecond;
+        private int burst;
+    }
+
+    //see RepositoryResilienceInterceptor; each category has its own timeout and bulkhead, the breaker is shared
+    @Data
+    public static class Resilience {
+        private boolean enabled = true;
+        private Operations read = new Operations(Duration.ofSeconds(2), 32);
+        private Operations write = new Operations(Duration.ofSeconds(3), 16);
+        private Operations auth = new Operations(Duration.ofSeconds(1), 8);
+        //per repository method, e.g. anime.resilience.timeouts.[AnimeRepository.streamAll]=10s
+        private Map<String, Duration> timeouts = new HashMap<>();
+        private Breaker circuitBreaker = new Breaker();
+    }
+
+    //on a Flux the timeout bounds the wait for the first row only, a stream then runs as long as its subscriber reads
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operations {
+        private Duration timeout;
+        private int maxConcurrent;
+    }
+
+    @Data
+    public static class Breaker {
+        private float failureRateThreshold = 50; //percent of timeouts and connection errors that opens it
+        private int slidingWindowSize = 50;
+        private int minimumNumberOfCalls = 20;
+        private Duration waitInOpenState = Duration.ofSeconds(10);
+        private int permittedCallsInHalfOpenState = 5;
+    }
+
+    @Data
+    public static class Schema {
+        private boolean migrate = true; //run db/migration scripts on startup, see SchemaConfig
+    }
+
+    @Data
+    public static class R2dbc {
+        private Pool pool = new Pool();
+        private SlowQuery slowQuery = new SlowQuery();
+        //read-only queries are balanced over these, see ReplicaRoutingConnectionFactory
+        private List<Replica> replicas = new ArrayList<>();
+    }
+
+    //pooled like the primary; username and password default to spring.r2dbc's
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+
+    //sizes and idle time stay under spring.r2dbc.pool, see R2dbcPoolConfig
+    @Data
+    public static class Pool {
+        private Duration maxAcquireTime = Duration.ofSeconds(3);
+        private Duration maxCreateConnectionTime = Duration.ofSeconds(5);
+        private Duration maxLifeTime = Duration.ofMinutes(30);
+        private ValidationDepth validationDepth = ValidationDepth.LOCAL;
+        private boolean warmup = true;
+    }
+
+    @Data
+    public static class SlowQuery {
+        private boolean enabled = true;
+        private Duration threshold = Duration.ofMillis(200);
+        private double sampleRate = 1.0; //fraction of slow statements that are logged
+        private int maxShapes = 500;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Cache {
+        private long maximumSize = 10_000;
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Security {
+        private Cache userCache = new Cache(1_000, Duration.ofMinutes(1));
+        private Cache credentialCache = new Cache(1_000, Duration.ofMinutes(2));
+        private PasswordVerification passwordVerification = new PasswordVerification();
+        private Token token = new Token();
+    }
+
+    @Data
+    public static class Token {
+        private boolean enabled = false;
+        private String secret; //base64, must be the same on every node
+        private Duration timeToLive = Duration.ofMinutes(15);
+    }
+
+    @Data
+    public static class PasswordVerification {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = 10_000;
+    }
+}
@@ -0,0 +1,37 @@
+package com.marcosmoreira.webflux.config;
+
+import com.marcosmoreira.webflux.repository.RepositoryMetricsInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+
+import java.util.Arrays;
+
+@Configuration
+public class MetricsConfig {
+
+    //static and lazy on the registry so the post processor does not pull meter binders in before they are ready
+    @Bean
+    public static BeanPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof Repository && bean instanceof Advised && !((Advised) bean).isFrozen()) {
+                    Advised repository = (Advised) bean;
+                    Class<?> repositoryInterface = Arrays.stream(repository.getProxiedInterfaces())
+                            .filter(Repository.class::isAssignableFrom)
+                            .findFirst()
+                            .orElse(bean.getClass());
+                    //first in the chain, query methods are executed by an interceptor that never calls proceed()
+                    repository.addAdvice(0, new RepositoryMetricsInterceptor(repositoryInterface,
+                            meterRegistry.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,183 @@
+package com.marcosmoreira.webflux.config;
+
+import com.marcosmoreira.webflux.r2dbc.MeteredConnectionFactory;
+import com.marcosmoreira.webflux.r2dbc.QueryStatistics;
+import com.marcosmoreira.webflux.r2dbc.ReplicaRoutingConnectionFactory;
+import com.marcosmoreira.webflux.r2dbc.SlowQueryListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.proxy.ProxyConnectionFactory;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.boot.autoconfigure.r2dbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.LoopResources;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces Boot's pool, which only knows spring.r2dbc.pool.initial-size, max-size, max-idle-time and
+ * validation-query. Those keys still apply here; acquire/create timeouts, max lifetime, validation depth
+ * and warm-up come from anime.r2dbc.pool. Each anime.r2dbc.replicas entry gets a pool with the same settings.
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class R2dbcPoolConfig {
+
+    //a ConnectionPool bean of its own so Boot's ConnectionPoolMetrics binds the r2dbc.pool.* gauges to it
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionPool(R2dbcProperties r2dbcProperties, AnimeProperties animeProperties) {
+        return connectionPool("anime", r2dbcProperties, animeProperties.getR2dbc().getPool());
+    }
+
+    private static ConnectionPool connectionPool(String name, R2dbcProperties r2dbcProperties,
+                                                 AnimeProperties.Pool pool) {
+        R2dbcProperties.Pool bootPool = r2dbcProperties.getPool();
+
+        ConnectionFactory connectionFactory = ConnectionFactoryBuilder
+                .of(r2dbcProperties, () -> EmbeddedDatabaseConnection.NONE)
+                .build();
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(connectionFactory)
+                .name(name)
+                .initialSize(bootPool.getInitialSize())
+                .maxSize(bootPool.getMaxSize())
+                .maxIdleTime(bootPool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .maxAcquireTime(pool.getMaxAcquireTime())
+                .maxCreateConnectionTime(pool.getMaxCreateConnectionTime())
+                .validationDepth(pool.getValidationDepth());
+        if (StringUtils.hasText(bootPool.getValidationQuery())) {
+            configuration.validationQuery(bootPool.getValidationQuery());
+        }
+
+        ConnectionPool connectionPool = new ConnectionPool(configuration.build());
+        log.info("R2DBC pool {} of {} to {} connections for {} netty workers", name, bootPool.getInitialSize(),
+                bootPool.getMaxSize(), LoopResources.DEFAULT_IO_WORKER_COUNT);
+
+        //the pool only opens connections on first acquire otherwise; a failed warm-up must not stop the app
+        if (pool.isWarmup()) {
+            warmup(connectionPool, bootPool.getInitialSize()).subscribe(
+                    warmed -> log.info("R2DBC pool {} warmed up with {} connections", name, warmed),
+                    error -> log.warn("R2DBC pool {} warm-up failed, connections will be opened on demand", name,
+                            error));
+        }
+        return connectionPool;
+    }
+
+    //not ConnectionPool.warmup(): it opens each connection from the previous one's callback and reactor-netty
+    //colocates them all on that event loop, which then serializes every query. Acquiring them concurrently from
+    //non netty threads spreads them over the loops
+    private static Mono<Integer> warmup(ConnectionPool connectionPool, int size) {
+        return Flux.range(0, size)
+                .flatMap(index -> Mono.from(connectionPool.create()).subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .flatMap(connections -> Flux.fromIterable(connections)
+                        .flatMap(Connection::close)
+                        .then(Mono.just(connections.size())));
+    }
+
+    //replica pools are not beans, so they are disposed with this list and their gauges bound here
+    @Bean(destroyMethod = "dispose")
+    public ReplicaPools replicaPools(R2dbcProperties r2dbcProperties, AnimeProperties animeProperties,
+                                     MeterRegistry meterRegistry) {
+        Map<String, ConnectionPool> pools = new LinkedHashMap<>();
+        List<AnimeProperties.Replica> replicas = animeProperties.getR2dbc().getReplicas();
+        for (int i = 0; i < replicas.size(); i++) {
+            String name = "replica-" + i;
+            ConnectionPool pool = connectionPool("anime-" + name, replicaProperties(r2dbcProperties, replicas.get(i)),
+                    animeProperties.getR2dbc().getPool());
+            new ConnectionPoolMetrics(pool, name, Tags.empty()).bindTo(meterRegistry);
+            pools.put(name, pool);
+        }
+        return new ReplicaPools(pools);
+    }
+
+    @Bean
+    @Primary
+    public ConnectionFactory connectionFactory(ConnectionPool connectionPool, ReplicaPools replicaPools,
+                                               AnimeProperties animeProperties, QueryStatistics queryStatistics,
+                                               MeterRegistry meterRegistry) {
+        ConnectionFactory primary = instrument(connectionPool, "connectionPool", animeProperties, queryStatistics,
+                meterRegistry);
+        if (replicaPools.pools.isEmpty()) {
+            return primary;
+        }
+
+        Map<String, ConnectionFactory> replicas = new LinkedHashMap<>();
+        replicaPools.pools.forEach((name, pool) -> replicas.put(name,
+                instrument(pool, name, animeProperties, queryStatistics, meterRegistry)));
+        return new ReplicaRoutingConnectionFactory(primary, replicas, replicaPools::connectionsInUse, meterRegistry);
+    }
+
+    private static ConnectionFactory instrument(ConnectionPool connectionPool, String name,
+                                                AnimeProperties animeProperties, QueryStatistics queryStatistics,
+                                                MeterRegistry meterRegistry) {
+        AnimeProperties.SlowQuery slowQuery = animeProperties.getR2dbc().getSlowQuery();
+        ConnectionFactory connectionFactory = connectionPool;
+        if (slowQuery.isEnabled()) {
+            connectionFactory = ProxyConnectionFactory.builder(connectionPool)
+                    .listener(new SlowQueryListener(queryStatistics, slowQuery))
+                    .build();
+        }
+        return new MeteredConnectionFactory(connectionFactory, name, meterRegistry);
+    }
+
+    private static R2dbcProperties replicaProperties(R2dbcProperties primary, AnimeProperties.Replica replica) {
+        R2dbcProperties properties = new R2dbcProperties();
+        properties.setUrl(replica.getUrl());
+        properties.setUsername(replica.getUsername() != null ? replica.getUsername() : primary.getUsername());
+        properties.setPassword(replica.getPassword() != null ? replica.getPassword() : primary.getPassword());
+        properties.getProperties().putAll(primary.getProperties());
+        properties.getPool().setInitialSize(primary.getPool().getInitialSize());
+        properties.getPool().setMaxSize(primary.getPool().getMaxSize());
+        properties.getPool().setMaxIdleTime(primary.getPool().getMaxIdleTime());
+        properties.getPool().setValidationQuery(primary.getPool().getValidationQuery());
+        return properties;
+    }
+
+    //outermost, so the read-your-writes scope covers the security chain as well as the handler
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public WebFilter readYourWritesWebFilter() {
+        return (exchange, chain) -> chain.filter(exchange)
+                .subscriberContext(ReplicaRoutingConnectionFactory::trackWrites);
+    }
+
+    public static final class ReplicaPools {
+
+        private final Map<String, ConnectionPool> pools;
+
+        private ReplicaPools(Map<String, ConnectionPool> pools) {
+            this.pools = pools;
+        }
+
+        private int connectionsInUse(String name) {
+            return pools.get(name).getMetrics()
+                    .map(metrics -> metrics.acquiredSize() + metrics.pendingAcquireSize())
+                    .orElse(0);
+        }
+
+        public void dispose() {
+            pools.values().forEach(ConnectionPool::dispose);
+        }
+    }
+}
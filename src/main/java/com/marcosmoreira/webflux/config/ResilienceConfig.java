@@ -0,0 +1,111 @@
+package com.marcosmoreira.webflux.config;
+
+import com.marcosmoreira.webflux.repository.DevDojoUserRepository;
+import com.marcosmoreira.webflux.repository.RepositoryResilienceInterceptor;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.R2dbcNonTransientResourceException;
+import io.r2dbc.spi.R2dbcTransientException;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.repository.Repository;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+@Configuration
+public class ResilienceConfig {
+
+    static final String CIRCUIT_BREAKER_NAME = "database";
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        AnimeProperties.Breaker properties = animeProperties.getResilience().getCircuitBreaker();
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(properties.getWaitInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(properties.getPermittedCallsInHalfOpenState())
+                //only signs of a sick database count; a missing row or a constraint violation does not
+                .recordException(error -> error instanceof TimeoutException
+                        || error instanceof DataAccessResourceFailureException
+                        || error instanceof TransientDataAccessException
+                        || error instanceof R2dbcTransientException
+                        || error instanceof R2dbcNonTransientResourceException)
+                .build();
+
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(MeterRegistry meterRegistry) {
+        BulkheadRegistry registry = BulkheadRegistry.ofDefaults();
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    //ordered so it runs before the metrics post processor, which then puts its timer outside of this advice
+    @Bean
+    public static BeanPostProcessor repositoryResiliencePostProcessor(ObjectProvider<AnimeProperties> animeProperties,
+                                                                      ObjectProvider<CircuitBreakerRegistry> circuitBreakers,
+                                                                      ObjectProvider<BulkheadRegistry> bulkheads,
+                                                                      ObjectProvider<MeterRegistry> meterRegistry) {
+        return new OrderedBeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                AnimeProperties.Resilience properties = animeProperties.getObject().getResilience();
+                if (properties.isEnabled() && bean instanceof Repository && bean instanceof Advised
+                        && !((Advised) bean).isFrozen()) {
+                    Advised repository = (Advised) bean;
+                    Class<?> repositoryInterface = Arrays.stream(repository.getProxiedInterfaces())
+                            .filter(Repository.class::isAssignableFrom)
+                            .findFirst()
+                            .orElse(bean.getClass());
+                    CircuitBreaker circuitBreaker = circuitBreakers.getObject().circuitBreaker(CIRCUIT_BREAKER_NAME);
+                    Map<String, Bulkhead> categories = Map.of(
+                            "read", bulkhead(bulkheads.getObject(), "read", properties.getRead()),
+                            "write", bulkhead(bulkheads.getObject(), "write", properties.getWrite()),
+                            "auth", bulkhead(bulkheads.getObject(), "auth", properties.getAuth()));
+                    repository.addAdvice(0, new RepositoryResilienceInterceptor(repositoryInterface,
+                            DevDojoUserRepository.class.isAssignableFrom(repositoryInterface), properties,
+                            circuitBreaker, categories, meterRegistry.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+
+    //no waiting for a permit: the reactive operator would have to block a thread to wait
+    private static Bulkhead bulkhead(BulkheadRegistry registry, String category,
+                                     AnimeProperties.Operations operations) {
+        return registry.bulkhead("database-" + category, BulkheadConfig.custom()
+                .maxConcurrentCalls(operations.getMaxConcurrent())
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+    }
+
+    private interface OrderedBeanPostProcessor extends BeanPostProcessor, Ordered {
+        @Override
+        default int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
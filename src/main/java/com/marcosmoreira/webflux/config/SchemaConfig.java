@@ -0,0 +1,38 @@
+package com.marcosmoreira.webflux.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.r2dbc.connectionfactory.init.ConnectionFactoryInitializer;
+import org.springframework.data.r2dbc.connectionfactory.init.ResourceDatabasePopulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+//on by default: the code expects every column the scripts add, e.g. anime.version, so an existing database has
+//to be brought up to date before the first query; anime.schema.migrate=false is for schemas managed elsewhere
+@Configuration
+@ConditionalOnProperty(prefix = "anime.schema", name = "migrate", havingValue = "true", matchIfMissing = true)
+public class SchemaConfig {
+
+    @Bean
+    public ConnectionFactoryInitializer schemaInitializer(ConnectionFactory connectionFactory) throws IOException {
+        Resource[] scripts = new PathMatchingResourcePatternResolver().getResources("classpath:db/migration/V*.sql");
+        //every script is idempotent, they run in version order on each startup
+        Arrays.sort(scripts, Comparator.comparingInt(SchemaConfig::version));
+
+        ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
+        initializer.setConnectionFactory(connectionFactory);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(scripts));
+        return initializer;
+    }
+
+    private static int version(Resource script) {
+        String filename = script.getFilename();
+        return Integer.parseInt(filename.substring(1, filename.indexOf("__")));
+    }
+}
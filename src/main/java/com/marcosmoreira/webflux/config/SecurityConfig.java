@@ -1,41 +1,118 @@
 package com.marcosmoreira.webflux.config;
 
+import com.marcosmoreira.webflux.security.BearerTokenAuthenticationConverter;
+import com.marcosmoreira.webflux.security.CachingReactiveAuthenticationManager;
+import com.marcosmoreira.webflux.security.FormLoginRequestCache;
+import com.marcosmoreira.webflux.security.FormLoginSecurityContextRepository;
+import com.marcosmoreira.webflux.security.RateLimitWebFilter;
+import com.marcosmoreira.webflux.security.RoleAuthorizationManager;
+import com.marcosmoreira.webflux.security.TokenAuthenticationManager;
+import com.marcosmoreira.webflux.security.TokenService;
+import com.marcosmoreira.webflux.security.VerifiedCredentialCache;
 import com.marcosmoreira.webflux.service.DevDojoUserDetailsService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
-import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.authentication.ServerAuthenticationEntryPointFailureHandler;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.savedrequest.NoOpServerRequestCache;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 @EnableWebFluxSecurity
 @EnableReactiveMethodSecurity
 public class SecurityConfig {
 
+    private static final RoleAuthorizationManager ADMIN = RoleAuthorizationManager.hasRole("ADMIN");
+    private static final RoleAuthorizationManager USER = RoleAuthorizationManager.hasRole("USER");
+
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         AnimeProperties animeProperties,
+                                                         TokenService tokenService,
+                                                         MeterRegistry meterRegistry) {
         //@formatter:off
-        return http
+        http
                 .csrf().disable()
                 .authorizeExchange()
-                .pathMatchers(HttpMethod.POST, "/animes/**").hasRole("ADMIN")
-                .pathMatchers(HttpMethod.GET, "/animes/**").hasRole("USER")
-                .pathMatchers(HttpMethod.PUT, "/animes/**").hasRole("ADMIN")
-                .pathMatchers(HttpMethod.DELETE, "/animes/**").hasRole("ADMIN")
+                .pathMatchers(HttpMethod.POST, "/auth/token").permitAll()
+                .pathMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                .pathMatchers("/actuator/**").access(ADMIN)
+                .pathMatchers(HttpMethod.POST, "/animes/**").access(ADMIN)
+                .pathMatchers(HttpMethod.GET, "/animes/**").access(USER)
+                .pathMatchers(HttpMethod.PUT, "/animes/**").access(ADMIN)
+                .pathMatchers(HttpMethod.PATCH, "/animes/**").access(ADMIN)
+                .pathMatchers(HttpMethod.DELETE, "/animes/**").access(ADMIN)
                 .anyExchange().authenticated()
                 .and()
-                .formLogin()
-                .and()
-                .httpBasic()
-                .and()
-                .build();
+                //not a bean: a WebFilter bean would also run outside the chain, before authentication
+                .addFilterAfter(new RateLimitWebFilter(animeProperties.getRateLimit(), meterRegistry),
+                        SecurityWebFiltersOrder.AUTHENTICATION);
+
+        if (animeProperties.getSecurity().getToken().isEnabled()) {
+            //stateless: no WebSession and no password check per request, only the token signature
+            http
+                    .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                    .requestCache().requestCache(NoOpServerRequestCache.getInstance())
+                    .and()
+                    .addFilterAt(tokenAuthenticationFilter(tokenService), SecurityWebFiltersOrder.AUTHENTICATION)
+                    .exceptionHandling()
+                    .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED))
+                    .and()
+                    .formLogin().disable()
+                    .httpBasic().disable();
+        } else {
+            http
+                    .securityContextRepository(new FormLoginSecurityContextRepository())
+                    .requestCache().requestCache(new FormLoginRequestCache())
+                    .and()
+                    .formLogin()
+                    .and()
+                    .httpBasic();
+        }
         //@formatter:on
+
+        return http.build();
+    }
+
+    private AuthenticationWebFilter tokenAuthenticationFilter(TokenService tokenService) {
+        AuthenticationWebFilter filter = new AuthenticationWebFilter(new TokenAuthenticationManager(tokenService));
+        filter.setServerAuthenticationConverter(new BearerTokenAuthenticationConverter());
+        filter.setAuthenticationFailureHandler(new ServerAuthenticationEntryPointFailureHandler(
+                new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED)));
+        return filter;
+    }
+
+    @Bean
+    PasswordEncoder passwordEncoder() {
+        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    Scheduler passwordVerificationScheduler(AnimeProperties animeProperties) {
+        AnimeProperties.PasswordVerification properties = animeProperties.getSecurity().getPasswordVerification();
+        return Schedulers.newBoundedElastic(properties.getThreads(), properties.getQueueCapacity(),
+                "password-verification");
     }
 
     @Bean
-    ReactiveAuthenticationManager authenticationManager(DevDojoUserDetailsService devDojoUserDetailsService) {
-        return new UserDetailsRepositoryReactiveAuthenticationManager(devDojoUserDetailsService);
+    ReactiveAuthenticationManager authenticationManager(DevDojoUserDetailsService devDojoUserDetailsService,
+                                                        PasswordEncoder passwordEncoder,
+                                                        VerifiedCredentialCache verifiedCredentialCache,
+                                                        Scheduler passwordVerificationScheduler,
+                                                        MeterRegistry meterRegistry) {
+        return new CachingReactiveAuthenticationManager(devDojoUserDetailsService, passwordEncoder,
+                verifiedCredentialCache, passwordVerificationScheduler, meterRegistry);
     }
 }//parei no 5:14
\ No newline at end of file
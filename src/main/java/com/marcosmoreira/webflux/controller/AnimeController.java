@@ -1,25 +1,49 @@
 package com.marcosmoreira.webflux.controller;
 
+import com.marcosmoreira.webflux.cache.IdempotencyCache;
+import com.marcosmoreira.webflux.config.CodecConfig;
+import com.marcosmoreira.webflux.domain.AnimeBatchResult;
 import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.AnimeImportResult;
+import com.marcosmoreira.webflux.domain.AnimeIngestStatus;
+import com.marcosmoreira.webflux.domain.AnimePage;
+import com.marcosmoreira.webflux.service.AnimeImportService;
+import com.marcosmoreira.webflux.service.AnimeIngestService;
 import com.marcosmoreira.webflux.service.AnimeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.net.URI;
+import java.security.Principal;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @RestController
@@ -28,41 +52,170 @@ import java.util.List;
 public class AnimeController {
 
     private final AnimeService animeService;
+    private final AnimeImportService animeImportService;
+    private final AnimeIngestService animeIngestService;
+    private final IdempotencyCache idempotencyCache;
 
+    //a matching If-None-Match gets a 304 before the body flux is subscribed, so the catalog is not read
     @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<Flux<AnimeDomain>>> listAll() {
+        return animeService.findAllWithVersion()
+                .map(catalog -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(catalog.getT1())
+                        .body(catalog.getT2()));
+    }
+
+    @GetMapping(produces = {CodecConfig.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
     @ResponseStatus(HttpStatus.OK)
     @PreAuthorize("hasRole('ADMIN')")
-    public Flux<AnimeDomain> listAll() {
-            return animeService.findAll();
+    public Flux<AnimeDomain> streamAll() {
+        return animeService.streamAll();
     }
 
-    @GetMapping(path = "{id}")
+    @GetMapping(path = "page")
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<AnimePage> listPage(@RequestParam(required = false) String cursor,
+                                    @RequestParam(required = false) Integer size) {
+        return animeService.findPage(cursor, size);
+    }
+
+    //with Accept: application/x-ndjson each match is written as soon as the database returns it
+    @GetMapping(path = "search", produces = {MediaType.APPLICATION_JSON_VALUE, CodecConfig.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<AnimeDomain> search(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        return animeService.search(q, limit);
+    }
+
+    @GetMapping(path = "suggest")
     @ResponseStatus(HttpStatus.OK)
-    public Mono<AnimeDomain> findById(@PathVariable int id) {
-            return animeService.findById(id);
+    public Flux<AnimeDomain> suggest(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        return animeService.suggest(q, limit);
+    }
+
+    @GetMapping(path = "{id}")
+    public Mono<ResponseEntity<AnimeDomain>> findById(@PathVariable int id) {
+        return animeService.findById(id)
+                .map(anime -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(String.valueOf(anime.getVersion()))
+                        .body(anime));
     }
 
+    //a retry carrying the same Idempotency-Key gets the first response back instead of a second insert
+    //the repository sets id and version on what it saves, so it gets a copy and the body stays as received
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Mono<AnimeDomain> save(@Valid @RequestBody AnimeDomain animeDomain) {
-        return animeService.save(animeDomain);
+    public Mono<AnimeDomain> save(@Valid @RequestBody AnimeDomain animeDomain,
+                                  @RequestHeader(name = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                  Principal principal) {
+        return idempotencyCache.execute(principal, idempotencyKey, "save", animeDomain,
+                () -> animeService.save(animeDomain.toBuilder().build()));
     }
 
     @PostMapping("/batch")
     @ResponseStatus(HttpStatus.CREATED)
-    public Flux<AnimeDomain> saveBatch(@Valid @RequestBody List<AnimeDomain> animeDomain) {
-        return animeService.saveAll(animeDomain);
+    public Flux<AnimeDomain> saveBatch(@Valid @RequestBody List<AnimeDomain> animeDomain,
+                                       @RequestHeader(name = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                       Principal principal) {
+        return idempotencyCache.execute(principal, idempotencyKey, "saveBatch", animeDomain,
+                () -> animeService.saveAll(animeDomain.stream()
+                        .map(anime -> anime.toBuilder().build())
+                        .collect(Collectors.toList()))
+                        .collectList())
+                .flatMapIterable(Function.identity());
+    }
+
+    //write-behind: 202 right away, the anime is inserted with the next batch and tracked under the returned id
+    @PostMapping("/ingest")
+    public Mono<ResponseEntity<AnimeIngestStatus>> ingest(@Valid @RequestBody AnimeDomain animeDomain,
+                                                          ServerHttpResponse response) {
+        return animeIngestService.ingest(animeDomain)
+                .map(status -> ResponseEntity.accepted()
+                        .location(URI.create("/animes/ingest/" + status.getTrackingId()))
+                        .body(status))
+                .doOnError(ResponseStatusException.class, error -> {
+                    //each flush frees a whole batch, so a full queue clears quickly unless the database is slow
+                    if (error.getStatus() == HttpStatus.TOO_MANY_REQUESTS) {
+                        response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                    }
+                });
+    }
+
+    @GetMapping(path = "/ingest/{trackingId}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<AnimeIngestStatus> ingestStatus(@PathVariable String trackingId) {
+        return animeIngestService.status(trackingId);
+    }
+
+    @PutMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<AnimeBatchResult> updateBatch(@RequestBody List<AnimeDomain> animeDomain) {
+        return animeService.updateAll(animeDomain);
+    }
+
+    @DeleteMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<AnimeBatchResult> deleteBatch(@RequestBody List<Integer> ids) {
+        return animeService.deleteAll(ids);
+    }
+
+    @PostMapping(path = "/import", consumes = CodecConfig.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<AnimeImportResult> importNdjson(@RequestBody Flux<DataBuffer> body) {
+        return animeImportService.importNdjson(body);
     }
 
+    @PostMapping(path = "/import", consumes = "text/csv")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<AnimeImportResult> importCsv(@RequestBody Flux<DataBuffer> body) {
+        return animeImportService.importCsv(body);
+    }
+
+    //without If-Match the last writer wins; the new ETag comes back so the client can chain updates
     @PutMapping(path = "{id}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> update(@PathVariable int id, @Valid @RequestBody AnimeDomain animeDomain) {
-        return animeService.update(animeDomain.withId(id), id);
+    public Mono<ResponseEntity<Void>> update(@PathVariable int id, @Valid @RequestBody AnimeDomain animeDomain,
+                                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.fromCallable(() -> Optional.ofNullable(versionOf(ifMatch)))
+                .flatMap(version -> animeService.update(animeDomain.withId(id), id, version.orElse(null)))
+                .map(anime -> ResponseEntity.noContent()
+                        .eTag(String.valueOf(anime.getVersion()))
+                        .build());
+    }
+
+    @PatchMapping(path = "{id}", consumes = {CodecConfig.APPLICATION_MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<Void>> patch(@PathVariable int id, @RequestBody Map<String, Object> patch,
+                                            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.fromCallable(() -> Optional.ofNullable(versionOf(ifMatch)))
+                .flatMap(version -> animeService.patch(id, patch, version.orElse(null)))
+                .map(anime -> ResponseEntity.noContent()
+                        .eTag(String.valueOf(anime.getVersion()))
+                        .build());
     }
 
     @DeleteMapping(path = "{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> delete(@PathVariable int id) {
-        return animeService.delete(id);
+    public Mono<Void> delete(@PathVariable int id,
+                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.fromCallable(() -> Optional.ofNullable(versionOf(ifMatch)))
+                .flatMap(version -> animeService.delete(id, version.orElse(null)));
+    }
+
+    //our ETags are the quoted version; * matches any existing anime, anything else can never match
+    private static Long versionOf(String ifMatch) {
+        if (ifMatch == null || ifMatch.strip().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.strip();
+        if (eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            try {
+                return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+            } catch (NumberFormatException e) {
+                //falls through to the precondition failure below
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match the anime");
     }
 }
\ No newline at end of file
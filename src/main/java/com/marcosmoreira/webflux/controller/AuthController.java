@@ -0,0 +1,40 @@
+package com.marcosmoreira.webflux.controller;
+
+import com.marcosmoreira.webflux.domain.TokenRequest;
+import com.marcosmoreira.webflux.domain.TokenResponse;
+import com.marcosmoreira.webflux.security.TokenService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("auth")
+@ConditionalOnProperty(prefix = "anime.security.token", name = "enabled", havingValue = "true")
+public class AuthController {
+
+    private final ReactiveAuthenticationManager authenticationManager;
+    private final TokenService tokenService;
+
+    @PostMapping(path = "token")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<TokenResponse> token(@Valid @RequestBody TokenRequest tokenRequest) {
+        return authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(tokenRequest.getUsername(),
+                        tokenRequest.getPassword()))
+                .map(tokenService::issue)
+                .onErrorMap(AuthenticationException.class,
+                        e -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid credentials"));
+    }
+}
@@ -0,0 +1,18 @@
+package com.marcosmoreira.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimeBatchResult {
+    private List<Integer> affected; //ids updated or deleted by the statement
+
+    private List<Integer> notFound;
+}
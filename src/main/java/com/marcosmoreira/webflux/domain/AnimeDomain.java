@@ -1,11 +1,13 @@
 package com.marcosmoreira.webflux.domain;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.With;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Table;
 
 import javax.validation.constraints.NotEmpty;
@@ -14,7 +16,7 @@ import javax.validation.constraints.NotNull;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @With
 @Table("anime")
 public class AnimeDomain {
@@ -24,4 +26,9 @@ public class AnimeDomain {
     @NotNull
     @NotEmpty(message = "The name of this anime cannot be empty.")
     private String name;
+
+    //bumped on every update, it is the anime's ETag; clients cannot set it through the body
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.marcosmoreira.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeImportReject {
+    private long line;
+
+    private String reason;
+}
@@ -0,0 +1,20 @@
+package com.marcosmoreira.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimeImportResult {
+    private long imported;
+
+    private long rejected;
+
+    private List<AnimeImportReject> rejects; //only the first rejects are listed, rejected holds the total
+}
@@ -0,0 +1,22 @@
+package com.marcosmoreira.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimeIngestStatus {
+    private String trackingId;
+
+    private State state;
+
+    private Integer id; //set once the anime is stored
+
+    public enum State {
+        QUEUED, STORED, FAILED
+    }
+}
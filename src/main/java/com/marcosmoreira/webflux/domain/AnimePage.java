@@ -0,0 +1,18 @@
+package com.marcosmoreira.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimePage {
+    private List<AnimeDomain> content;
+
+    private String nextCursor; //null when there is no next page
+}
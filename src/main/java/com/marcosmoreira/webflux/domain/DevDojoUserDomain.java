@@ -1,20 +1,23 @@
 package com.marcosmoreira.webflux.domain;
 
-import lombok.AllArgsConstructor;
+import com.marcosmoreira.webflux.security.GrantedAuthorities;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.relational.core.mapping.Table;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 @Table("devdojo_user")
 public class DevDojoUserDomain implements UserDetails {
@@ -26,11 +29,35 @@ public class DevDojoUserDomain implements UserDetails {
     private String password;
     private String authorities; //ROLE_USER,ROLE_ADMIN
 
+    //parsed from authorities on first use, shared with every user that has the same roles
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile Set<GrantedAuthority> grantedAuthorities;
+
+    public DevDojoUserDomain(Integer id, String name, String username, String password, String authorities) {
+        this.id = id;
+        this.name = name;
+        this.username = username;
+        this.password = password;
+        this.authorities = authorities;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return Arrays.stream(authorities.split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+        Set<GrantedAuthority> parsed = grantedAuthorities;
+        if (parsed == null) {
+            parsed = GrantedAuthorities.parse(authorities);
+            grantedAuthorities = parsed;
+        }
+        return parsed;
+    }
+
+    public void setAuthorities(String authorities) {
+        this.authorities = authorities;
+        this.grantedAuthorities = null;
     }
 
     @Override
@@ -0,0 +1,18 @@
+package com.marcosmoreira.webflux.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenRequest {
+    @NotEmpty
+    private String username;
+
+    @NotEmpty
+    private String password;
+}
@@ -0,0 +1,48 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a statement to its shape, so that the same query with different literals, bind marker
+ * numbers or VALUES list lengths is counted once.
+ */
+final class QueryShapes {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    //a named marker never follows another colon, that would be a ::type cast
+    private static final Pattern BIND_MARKER = Pattern.compile("\\$\\d+|(?<!:):\\w+");
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern TUPLE_LIST = Pattern.compile("\\(\\?\\)(?:\\s*,\\s*\\(\\?\\))+");
+    private static final Pattern VALUE_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    //statements come from a handful of repository methods, so the regexes run once per distinct sql
+    private static final int MAX_CACHED = 1_000;
+    private static final Map<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private QueryShapes() {
+    }
+
+    static String of(String sql) {
+        String shape = CACHE.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        shape = normalize(sql);
+        if (CACHE.size() < MAX_CACHED) {
+            CACHE.put(sql, shape);
+        }
+        return shape;
+    }
+
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = BIND_MARKER.matcher(shape).replaceAll("?");
+        shape = NUMBER.matcher(shape).replaceAll("?");
+        shape = TUPLE_LIST.matcher(shape).replaceAll("(?), ...");
+        shape = VALUE_LIST.matcher(shape).replaceAll("?, ...");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,82 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+//in-memory per query shape totals, read through the queries actuator endpoint
+@Component
+public class QueryStatistics {
+
+    static final String OTHER = "(other)";
+
+    private final int maxShapes;
+    private final Map<String, ShapeStatistics> statistics = new ConcurrentHashMap<>();
+
+    public QueryStatistics(AnimeProperties animeProperties) {
+        this.maxShapes = animeProperties.getR2dbc().getSlowQuery().getMaxShapes();
+    }
+
+    public void record(String shape, long nanos, boolean success) {
+        ShapeStatistics shapeStatistics = statistics.get(shape);
+        if (shapeStatistics == null) {
+            //bounded, so statements built with literals can't grow the map forever
+            String key = statistics.size() < maxShapes ? shape : OTHER;
+            shapeStatistics = statistics.computeIfAbsent(key, k -> new ShapeStatistics());
+        }
+        shapeStatistics.record(nanos, success);
+    }
+
+    public List<QuerySummary> summaries() {
+        return statistics.entrySet().stream()
+                .map(entry -> entry.getValue().summary(entry.getKey()))
+                .sorted(Comparator.comparingDouble(QuerySummary::getTotalMillis).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    @Value
+    public static class QuerySummary {
+        String query;
+        long count;
+        long errors;
+        double totalMillis;
+        double meanMillis;
+        double maxMillis;
+    }
+
+    private static final class ShapeStatistics {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos, boolean success) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (!success) {
+                errors.increment();
+            }
+        }
+
+        private QuerySummary summary(String shape) {
+            long executions = count.sum();
+            double total = totalNanos.sum() / 1e6;
+            return new QuerySummary(shape, executions, errors.sum(), total,
+                    executions == 0 ? 0 : total / executions, maxNanos.get() / 1e6);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+//GET /actuator/queries lists query shapes by total time spent, DELETE starts a new measurement window
+@Component
+@Endpoint(id = "queries")
+@RequiredArgsConstructor
+public class QueryStatisticsEndpoint {
+
+    private final QueryStatistics queryStatistics;
+
+    @ReadOperation
+    public List<QueryStatistics.QuerySummary> queries() {
+        return queryStatistics.summaries();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        queryStatistics.reset();
+    }
+}
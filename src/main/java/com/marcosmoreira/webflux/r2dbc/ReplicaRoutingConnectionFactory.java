@@ -0,0 +1,156 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.data.r2dbc.connectionfactory.lookup.AbstractRoutingConnectionFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+/**
+ * Sends publishers marked with {@link #readOnly(Mono)} to the replica with the fewest connections in use and
+ * everything else to the primary. Once a request has touched the primary its later reads stay there too, so it
+ * never reads a replica that has not caught up with its own write.
+ */
+public class ReplicaRoutingConnectionFactory extends AbstractRoutingConnectionFactory {
+
+    static final String PRIMARY = "primary";
+
+    private static final String READ_ONLY_KEY = ReplicaRoutingConnectionFactory.class.getName() + ".READ_ONLY";
+    private static final String WROTE_KEY = ReplicaRoutingConnectionFactory.class.getName() + ".WROTE";
+    private static final String PINNED_KEY = ReplicaRoutingConnectionFactory.class.getName() + ".PINNED";
+
+    private final ConnectionFactory primary;
+    private final List<String> replicas;
+    private final ToIntFunction<String> connectionsInUse;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, Counter> readCounters = new HashMap<>();
+    private final Counter writes;
+    private final Counter readsAfterWrite;
+    private final Counter replicaFailures;
+
+    //connectionsInUse gets a replica name and returns its acquired plus pending connections
+    public ReplicaRoutingConnectionFactory(ConnectionFactory primary, Map<String, ConnectionFactory> replicas,
+                                           ToIntFunction<String> connectionsInUse, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas.keySet());
+        this.connectionsInUse = connectionsInUse;
+
+        Map<String, ConnectionFactory> targets = new LinkedHashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetConnectionFactories(targets);
+        setDefaultTargetConnectionFactory(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+
+        this.replicas.forEach(replica -> readCounters.put(replica, counter(replica, "read", meterRegistry)));
+        this.writes = counter(PRIMARY, "read_write", meterRegistry);
+        this.readsAfterWrite = counter(PRIMARY, "read_your_writes", meterRegistry);
+        this.replicaFailures = counter(PRIMARY, "replica_unavailable", meterRegistry);
+    }
+
+    public static <T> Mono<T> readOnly(Mono<T> publisher) {
+        return publisher.subscriberContext(Context.of(READ_ONLY_KEY, Boolean.TRUE));
+    }
+
+    public static <T> Flux<T> readOnly(Flux<T> publisher) {
+        return publisher.subscriberContext(Context.of(READ_ONLY_KEY, Boolean.TRUE));
+    }
+
+    //opens a read-your-writes scope, one per request; without it every read-only publisher may go to a replica
+    public static Context trackWrites(Context context) {
+        return context.put(WROTE_KEY, new AtomicBoolean());
+    }
+
+    //read-only publishers sharing this context go to the database the first of them was routed to; a replica
+    //applies commits in order, so a later read there never sees older data than an earlier one did
+    public static Context pinned() {
+        return Context.of(PINNED_KEY, new AtomicReference<String>());
+    }
+
+    //a replica that cannot hand out a connection costs the read a trip to the primary, not an error
+    @Override
+    public Mono<Connection> create() {
+        return determineTargetConnectionFactory()
+                .flatMap(target -> target == primary
+                        ? Mono.from(target.create())
+                        : Mono.<Connection>from(target.create()).onErrorResume(error -> {
+                            replicaFailures.increment();
+                            return Mono.subscriberContext().flatMap(context -> {
+                                //the primary is never behind a replica, later pinned reads may follow it there
+                                AtomicReference<String> pin = context.getOrDefault(PINNED_KEY, null);
+                                if (pin != null) {
+                                    pin.set(PRIMARY);
+                                }
+                                return Mono.from(primary.create());
+                            });
+                        }));
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.subscriberContext().map(context -> {
+            AtomicBoolean wrote = context.getOrDefault(WROTE_KEY, null);
+            if (!context.getOrDefault(READ_ONLY_KEY, Boolean.FALSE)) {
+                if (wrote != null) {
+                    wrote.set(true);
+                }
+                writes.increment();
+                return PRIMARY;
+            }
+            if (wrote != null && wrote.get()) {
+                readsAfterWrite.increment();
+                return PRIMARY;
+            }
+            AtomicReference<String> pin = context.getOrDefault(PINNED_KEY, null);
+            String replica = pin == null
+                    ? leastBusyReplica()
+                    : pin.updateAndGet(pinned -> pinned != null ? pinned : leastBusyReplica());
+            if (replica == null || replica.equals(PRIMARY)) {
+                return PRIMARY;
+            }
+            readCounters.get(replica).increment();
+            return replica;
+        });
+    }
+
+    //least connections in use, ties broken round robin so an idle cluster still spreads the load
+    private String leastBusyReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        String chosen = null;
+        int fewest = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            String replica = replicas.get((start + i) % size);
+            int inUse = connectionsInUse.applyAsInt(replica);
+            if (inUse < fewest) {
+                chosen = replica;
+                fewest = inUse;
+            }
+        }
+        return chosen;
+    }
+
+    private static Counter counter(String target, String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("r2dbc.routing")
+                .description("Connections handed out per target database and routing reason")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,43 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.r2dbc.proxy.core.QueryExecutionInfo;
+import io.r2dbc.proxy.core.QueryInfo;
+import io.r2dbc.proxy.listener.ProxyExecutionListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Every statement is added to {@link QueryStatistics}; only the ones slower than the threshold are
+ * logged, and of those only a sampled fraction, so a slow database can't turn into a logging storm.
+ * Bound values are never logged.
+ */
+@Slf4j
+public class SlowQueryListener implements ProxyExecutionListener {
+
+    private final QueryStatistics queryStatistics;
+    private final long thresholdNanos;
+    private final double sampleRate;
+
+    public SlowQueryListener(QueryStatistics queryStatistics, AnimeProperties.SlowQuery properties) {
+        this.queryStatistics = queryStatistics;
+        this.thresholdNanos = properties.getThreshold().toNanos();
+        this.sampleRate = properties.getSampleRate();
+    }
+
+    @Override
+    public void afterQuery(QueryExecutionInfo execution) {
+        long nanos = execution.getExecuteDuration().toNanos();
+        String sql = execution.getQueries().size() == 1
+                ? execution.getQueries().get(0).getQuery()
+                : execution.getQueries().stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+        queryStatistics.record(QueryShapes.of(sql), nanos, execution.isSuccess());
+
+        if (nanos >= thresholdNanos && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            log.warn("Slow query took {} ms ({} bindings, {}): {}", nanos / 1_000_000, execution.getBindingsSize(),
+                    execution.isSuccess() ? "success" : "failed", sql);
+        }
+    }
+}
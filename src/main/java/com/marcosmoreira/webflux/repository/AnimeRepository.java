@@ -1,10 +1,27 @@
 package com.marcosmoreira.webflux.repository;
 
 import com.marcosmoreira.webflux.domain.AnimeDomain;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface AnimeRepository extends ReactiveCrudRepository<AnimeDomain, Integer> {
+public interface AnimeRepository extends ReactiveCrudRepository<AnimeDomain, Integer>, CustomAnimeRepository {
 
     Mono<AnimeDomain> findById(int id);
-}
\ No newline at end of file
+
+    @Query("SELECT * FROM anime WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<AnimeDomain> findPageAfter(int afterId, int limit);
+
+    //prefix and pattern are ILIKE patterns already escaped by the caller
+    //ordered before the limit so the same term always returns the same, alphabetically first matches
+    @Query("SELECT * FROM anime WHERE name ILIKE :prefix ORDER BY name, id LIMIT :limit")
+    Flux<AnimeDomain> searchByPrefix(String prefix, int limit);
+
+    @Query("SELECT * FROM anime WHERE name ILIKE :pattern AND name NOT ILIKE :prefix ORDER BY name, id LIMIT :limit")
+    Flux<AnimeDomain> searchBySubstring(String pattern, String prefix, int limit);
+
+    //64 rows kept up to date by a trigger on anime, see V4__anime_catalog_version.sql
+    @Query("SELECT sum(version)::text FROM anime_catalog_slot")
+    Mono<String> catalogVersion();
+}
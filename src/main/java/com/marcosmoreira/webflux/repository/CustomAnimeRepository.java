@@ -0,0 +1,30 @@
+package com.marcosmoreira.webflux.repository;
+
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface CustomAnimeRepository {
+
+    Flux<AnimeDomain> streamAll(int fetchSize);
+
+    //emits the stored rows in the order of animes, callers match them to their input by position
+    Flux<AnimeDomain> insertAll(List<AnimeDomain> animes, int chunkSize);
+
+    //a null version skips the version check; empty when no row matched
+    Mono<AnimeDomain> updateIfMatches(int id, String name, Long version);
+
+    //writes only the given columns, whose names must come from a whitelist and never from the request
+    Mono<AnimeDomain> patchIfMatches(int id, Map<String, Object> columns, Long version);
+
+    //set-based, one statement for the whole list; emit only the ids that existed
+    Flux<Integer> deleteByIds(List<Integer> ids);
+
+    Flux<AnimeDomain> updateNames(List<AnimeDomain> animes);
+
+    //a null version skips the version check; emits the number of deleted rows
+    Mono<Integer> deleteIfMatches(int id, Long version);
+}
@@ -0,0 +1,117 @@
+package com.marcosmoreira.webflux.repository;
+
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class CustomAnimeRepositoryImpl implements CustomAnimeRepository {
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<AnimeDomain> streamAll(int fetchSize) {
+        //a fetch size makes the driver use a portal and pull rows in chunks instead of the whole result at once
+        return databaseClient.execute("SELECT * FROM anime ORDER BY id")
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .as(AnimeDomain.class)
+                .fetch()
+                .all();
+    }
+
+    @Override
+    public Flux<AnimeDomain> insertAll(List<AnimeDomain> animes, int chunkSize) {
+        return Flux.fromIterable(animes)
+                .buffer(chunkSize)
+                .concatMap(this::insertChunk);
+    }
+
+    @Override
+    public Mono<AnimeDomain> updateIfMatches(int id, String name, Long version) {
+        return patchIfMatches(id, Map.of("name", name), version);
+    }
+
+    //single round trip, the version check happens in the WHERE clause instead of a read before the write
+    @Override
+    public Mono<AnimeDomain> patchIfMatches(int id, Map<String, Object> columns, Long version) {
+        StringBuilder sql = new StringBuilder("UPDATE anime SET ");
+        List<Object> values = new ArrayList<>();
+        columns.forEach((column, value) -> {
+            values.add(value);
+            sql.append(column).append(" = $").append(values.size()).append(", ");
+        });
+        values.add(id);
+        sql.append("version = version + 1 WHERE id = $").append(values.size());
+        if (version != null) {
+            values.add(version);
+            sql.append(" AND version = $").append(values.size());
+        }
+        sql.append(" RETURNING *");
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.execute(sql.toString());
+        for (int i = 0; i < values.size(); i++) {
+            spec = spec.bind(i, values.get(i));
+        }
+
+        return spec.as(AnimeDomain.class)
+                .fetch()
+                .one();
+    }
+
+    @Override
+    public Mono<Integer> deleteIfMatches(int id, Long version) {
+        DatabaseClient.GenericExecuteSpec spec = version == null
+                ? databaseClient.execute("DELETE FROM anime WHERE id = $1")
+                : databaseClient.execute("DELETE FROM anime WHERE id = $1 AND version = $2")
+                        .bind(1, version);
+
+        return spec.bind(0, id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Flux<Integer> deleteByIds(List<Integer> ids) {
+        return databaseClient.execute("DELETE FROM anime WHERE id = ANY($1) RETURNING id")
+                .bind(0, ids.toArray(new Integer[0]))
+                .map(row -> row.get("id", Integer.class))
+                .all();
+    }
+
+    //the ids and names travel as two arrays and are zipped back into rows by unnest
+    @Override
+    public Flux<AnimeDomain> updateNames(List<AnimeDomain> animes) {
+        Integer[] ids = animes.stream().map(AnimeDomain::getId).toArray(Integer[]::new);
+        String[] names = animes.stream().map(AnimeDomain::getName).toArray(String[]::new);
+
+        return databaseClient.execute("UPDATE anime SET name = batch.name, version = anime.version + 1"
+                + " FROM unnest($1::int[], $2::varchar[]) AS batch(id, name)"
+                + " WHERE anime.id = batch.id RETURNING anime.*")
+                .bind(0, ids)
+                .bind(1, names)
+                .as(AnimeDomain.class)
+                .fetch()
+                .all();
+    }
+
+    //one INSERT per chunk. RETURNING promises no order, so each name gets its id up front next to its position
+    //in the chunk and the inserted rows are joined back on that id and sorted by the position
+    private Flux<AnimeDomain> insertChunk(List<AnimeDomain> chunk) {
+        String[] names = chunk.stream().map(AnimeDomain::getName).toArray(String[]::new);
+
+        return databaseClient.execute("WITH batch AS (SELECT nextval('anime_id_seq') AS id, name, ordinal"
+                + " FROM unnest($1::varchar[]) WITH ORDINALITY AS batch(name, ordinal)),"
+                + " inserted AS (INSERT INTO anime (id, name) SELECT id, name FROM batch RETURNING *)"
+                + " SELECT inserted.* FROM inserted JOIN batch USING (id) ORDER BY batch.ordinal")
+                .bind(0, names)
+                .as(AnimeDomain.class)
+                .fetch()
+                .all();
+    }
+}
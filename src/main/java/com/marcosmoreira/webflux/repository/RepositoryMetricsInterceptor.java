@@ -0,0 +1,85 @@
+package com.marcosmoreira.webflux.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times repository methods from subscription to termination, which is when the query actually runs,
+ * not when the Mono or Flux is assembled. Same meter name and tags Spring Data uses from Boot 2.5 on.
+ */
+public class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+    static final String METRIC_NAME = "spring.data.repository.invocations";
+
+    private final String repository;
+    private final MeterRegistry meterRegistry;
+    private final Map<Method, Timers> timers = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsInterceptor(Class<?> repositoryInterface, MeterRegistry meterRegistry) {
+        this.repository = repositoryInterface.getSimpleName();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        Timers methodTimers = timers.computeIfAbsent(invocation.getMethod(), this::timers);
+
+        if (result instanceof Mono) {
+            Mono<?> mono = (Mono<?>) result;
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return mono.doFinally(signal -> methodTimers.record(signal, start));
+            });
+        }
+        if (result instanceof Flux) {
+            Flux<?> flux = (Flux<?>) result;
+            return Flux.defer(() -> {
+                long start = System.nanoTime();
+                return flux.doFinally(signal -> methodTimers.record(signal, start));
+            });
+        }
+        return result;
+    }
+
+    private Timers timers(Method method) {
+        return new Timers(timer(method, "SUCCESS"), timer(method, "ERROR"), timer(method, "CANCELED"));
+    }
+
+    private Timer timer(Method method, String state) {
+        return Timer.builder(METRIC_NAME)
+                .description("Duration of repository invocations")
+                .tag("repository", repository)
+                .tag("method", method.getName())
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+
+    private static final class Timers {
+
+        private final Timer success;
+        private final Timer error;
+        private final Timer canceled;
+
+        private Timers(Timer success, Timer error, Timer canceled) {
+            this.success = success;
+            this.error = error;
+            this.canceled = canceled;
+        }
+
+        private void record(SignalType signal, long start) {
+            Timer timer = signal == SignalType.ON_ERROR ? error : signal == SignalType.CANCEL ? canceled : success;
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
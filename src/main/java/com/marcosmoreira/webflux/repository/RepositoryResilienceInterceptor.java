@@ -0,0 +1,133 @@
+package com.marcosmoreira.webflux.repository;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bounds every repository call: a timeout, a bulkhead per category (reads, writes, auth lookups) that rejects
+ * instead of queueing, and the shared database circuit breaker that fails fast while postgres is degraded.
+ * Rejections surface as 503 and timeouts as 504 so a brownout costs latency, not request slots.
+ */
+public class RepositoryResilienceInterceptor implements MethodInterceptor {
+
+    static final String REJECTED_METRIC_NAME = "db.calls.rejected";
+
+    private static final List<String> READ_PREFIXES = List.of("find", "stream", "search", "count", "exists", "catalog");
+
+    private final String repository;
+    private final boolean auth;
+    private final AnimeProperties.Resilience properties;
+    private final CircuitBreaker circuitBreaker;
+    private final Map<String, Bulkhead> bulkheads;
+    private final MeterRegistry meterRegistry;
+    private final Map<Method, Policy> policies = new ConcurrentHashMap<>();
+
+    //bulkheads is keyed by category: read, write or auth
+    public RepositoryResilienceInterceptor(Class<?> repositoryInterface, boolean auth,
+                                           AnimeProperties.Resilience properties, CircuitBreaker circuitBreaker,
+                                           Map<String, Bulkhead> bulkheads, MeterRegistry meterRegistry) {
+        this.repository = repositoryInterface.getSimpleName();
+        this.auth = auth;
+        this.properties = properties;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkheads = bulkheads;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (!(result instanceof Mono) && !(result instanceof Flux)) {
+            return result;
+        }
+
+        Policy policy = policies.computeIfAbsent(invocation.getMethod(), this::policy);
+        //the breaker sees timeouts but sits inside the bulkhead, so a rejection for being busy never counts as a failure
+        if (result instanceof Mono) {
+            return ((Mono<?>) result)
+                    .timeout(policy.timeout)
+                    .transform(CircuitBreakerOperator.of(circuitBreaker))
+                    .transform(BulkheadOperator.of(policy.bulkhead))
+                    .onErrorMap(policy::translate);
+        }
+        //only the first row is timed: later gaps are the subscriber's backpressure, a slow consumer must not get a 504
+        return ((Flux<?>) result)
+                .timeout(Mono.delay(policy.timeout), row -> Mono.never())
+                .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(policy.bulkhead))
+                .onErrorMap(policy::translate);
+    }
+
+    private Policy policy(Method method) {
+        String category = auth ? "auth"
+                : READ_PREFIXES.stream().anyMatch(method.getName()::startsWith) ? "read" : "write";
+        AnimeProperties.Operations operations = category.equals("auth") ? properties.getAuth()
+                : category.equals("read") ? properties.getRead() : properties.getWrite();
+        Duration timeout = properties.getTimeouts()
+                .getOrDefault(repository + "." + method.getName(), operations.getTimeout());
+        return new Policy(timeout, bulkheads.get(category), counter(category, "timeout"),
+                counter(category, "bulkhead"), counter(category, "circuit_open"));
+    }
+
+    private Counter counter(String category, String reason) {
+        return Counter.builder(REJECTED_METRIC_NAME)
+                .description("Repository calls cut short by the resilience policy")
+                .tag("category", category)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static final class Policy {
+
+        private final Duration timeout;
+        private final Bulkhead bulkhead;
+        private final Counter timedOut;
+        private final Counter bulkheadFull;
+        private final Counter circuitOpen;
+
+        private Policy(Duration timeout, Bulkhead bulkhead, Counter timedOut, Counter bulkheadFull,
+                       Counter circuitOpen) {
+            this.timeout = timeout;
+            this.bulkhead = bulkhead;
+            this.timedOut = timedOut;
+            this.bulkheadFull = bulkheadFull;
+            this.circuitOpen = circuitOpen;
+        }
+
+        private Throwable translate(Throwable error) {
+            if (error instanceof TimeoutException) {
+                timedOut.increment();
+                return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Database call timed out", error);
+            }
+            if (error instanceof BulkheadFullException) {
+                bulkheadFull.increment();
+                return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Database is busy", error);
+            }
+            if (error instanceof CallNotPermittedException) {
+                circuitOpen.increment();
+                return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Database is unavailable", error);
+            }
+            return error;
+        }
+    }
+}
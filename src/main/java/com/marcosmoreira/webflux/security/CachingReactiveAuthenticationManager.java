@@ -0,0 +1,95 @@
+package com.marcosmoreira.webflux.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsChecker;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Same contract as UserDetailsRepositoryReactiveAuthenticationManager, but a password that was verified recently
+ * is accepted from VerifiedCredentialCache and every remaining bcrypt check runs on a dedicated bounded scheduler
+ * instead of the netty event loop.
+ */
+public class CachingReactiveAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final ReactiveUserDetailsService userDetailsService;
+    private final PasswordEncoder passwordEncoder;
+    private final VerifiedCredentialCache verifiedCredentialCache;
+    private final Scheduler passwordScheduler;
+    private final Timer verificationTimer;
+    private final Counter rejectedVerifications;
+    private final UserDetailsChecker userDetailsChecker = new AccountStatusUserDetailsChecker();
+
+    public CachingReactiveAuthenticationManager(ReactiveUserDetailsService userDetailsService,
+                                                PasswordEncoder passwordEncoder,
+                                                VerifiedCredentialCache verifiedCredentialCache,
+                                                Scheduler passwordScheduler,
+                                                MeterRegistry meterRegistry) {
+        this.userDetailsService = userDetailsService;
+        this.passwordEncoder = passwordEncoder;
+        this.verifiedCredentialCache = verifiedCredentialCache;
+        this.passwordScheduler = passwordScheduler;
+        this.verificationTimer = Timer.builder("security.password.verification")
+                .description("Time spent in PasswordEncoder.matches")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedVerifications = Counter.builder("security.password.verification.rejected")
+                .description("Password checks refused because the verification queue was full")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (credentials == null) {
+            return badCredentials();
+        }
+        String presentedPassword = credentials.toString();
+
+        return userDetailsService.findByUsername(username)
+                .filterWhen(user -> matches(user, presentedPassword))
+                .switchIfEmpty(badCredentials())
+                .doOnNext(userDetailsChecker::check)
+                .map(user -> new UsernamePasswordAuthenticationToken(user, user.getPassword(), user.getAuthorities()));
+    }
+
+    private Mono<Boolean> matches(UserDetails user, String presentedPassword) {
+        if (verifiedCredentialCache.isVerified(user.getUsername(), user.getPassword(), presentedPassword)) {
+            return Mono.just(true);
+        }
+
+        return Mono.fromCallable(() -> verificationTimer.recordCallable(
+                        () -> passwordEncoder.matches(presentedPassword, user.getPassword())))
+                .subscribeOn(passwordScheduler)
+                //a full queue is overload, not bad credentials and not a server bug: 503 so clients back off
+                .onErrorMap(RejectedExecutionException.class, e -> {
+                    rejectedVerifications.increment();
+                    return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Too many logins in progress", e);
+                })
+                .doOnNext(matched -> {
+                    if (matched) {
+                        verifiedCredentialCache.verified(user.getUsername(), user.getPassword(), presentedPassword);
+                    }
+                });
+    }
+
+    private static <T> Mono<T> badCredentials() {
+        return Mono.error(new BadCredentialsException("Invalid Credentials"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.marcosmoreira.webflux.security;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.web.server.savedrequest.ServerRequestCache;
+import org.springframework.security.web.server.savedrequest.WebSessionServerRequestCache;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * WebSessionServerRequestCache for form login only: ServerRequestCacheWebFilter asks it on every request whether
+ * a saved request matches, which made InMemoryWebSessionStore create a WebSession for each one. Without a session
+ * cookie there can't be a saved request, so the session is only consulted when the request carries one.
+ */
+public class FormLoginRequestCache implements ServerRequestCache {
+
+    private final WebSessionServerRequestCache sessions = new WebSessionServerRequestCache();
+
+    //a browser sent to the login page, the session it creates is the one form login continues with
+    @Override
+    public Mono<Void> saveRequest(ServerWebExchange exchange) {
+        return sessions.saveRequest(exchange);
+    }
+
+    @Override
+    public Mono<URI> getRedirectUri(ServerWebExchange exchange) {
+        if (!FormLoginSecurityContextRepository.hasSessionCookie(exchange)) {
+            return Mono.empty();
+        }
+        return sessions.getRedirectUri(exchange);
+    }
+
+    @Override
+    public Mono<ServerHttpRequest> removeMatchingRequest(ServerWebExchange exchange) {
+        if (!FormLoginSecurityContextRepository.hasSessionCookie(exchange)) {
+            return Mono.empty();
+        }
+        return sessions.removeMatchingRequest(exchange);
+    }
+}
@@ -0,0 +1,41 @@
+package com.marcosmoreira.webflux.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the security context in the WebSession for form login only. Basic auth requests send their credentials
+ * every time and no session cookie, yet loading the context for them made InMemoryWebSessionStore create a
+ * WebSession per request on boundedElastic; they now neither load nor save one.
+ */
+public class FormLoginSecurityContextRepository implements ServerSecurityContextRepository {
+
+    //CookieWebSessionIdResolver's default, the application does not rename it
+    private static final String SESSION_COOKIE = "SESSION";
+
+    private final WebSessionServerSecurityContextRepository sessions = new WebSessionServerSecurityContextRepository();
+
+    @Override
+    public Mono<Void> save(ServerWebExchange exchange, SecurityContext context) {
+        if (exchange.getRequest().getHeaders().containsKey(HttpHeaders.AUTHORIZATION)) {
+            return Mono.empty();
+        }
+        return sessions.save(exchange, context);
+    }
+
+    @Override
+    public Mono<SecurityContext> load(ServerWebExchange exchange) {
+        if (!hasSessionCookie(exchange)) {
+            return Mono.empty();
+        }
+        return sessions.load(exchange);
+    }
+
+    static boolean hasSessionCookie(ServerWebExchange exchange) {
+        return exchange.getRequest().getCookies().containsKey(SESSION_COOKIE);
+    }
+}
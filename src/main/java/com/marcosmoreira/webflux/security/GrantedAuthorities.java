@@ -0,0 +1,46 @@
+package com.marcosmoreira.webflux.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/*
+ * Interned authorities: every role is a single shared GrantedAuthority and every distinct authorities column
+ * value ("ROLE_USER,ROLE_ADMIN") is parsed once into a shared immutable set. Both maps only grow with the number
+ * of distinct roles and role combinations, which is tiny.
+ */
+public final class GrantedAuthorities {
+
+    private static final ConcurrentMap<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Set<GrantedAuthority>> AUTHORITY_SETS = new ConcurrentHashMap<>();
+
+    private GrantedAuthorities() {
+    }
+
+    public static GrantedAuthority of(String authority) {
+        return AUTHORITIES.computeIfAbsent(authority, SimpleGrantedAuthority::new);
+    }
+
+    public static Set<GrantedAuthority> parse(String commaSeparatedAuthorities) {
+        if (commaSeparatedAuthorities == null) {
+            return Collections.emptySet();
+        }
+        return AUTHORITY_SETS.computeIfAbsent(commaSeparatedAuthorities, GrantedAuthorities::split);
+    }
+
+    private static Set<GrantedAuthority> split(String commaSeparatedAuthorities) {
+        Set<GrantedAuthority> authorities = Arrays.stream(commaSeparatedAuthorities.split(","))
+                .map(String::trim)
+                .filter(authority -> !authority.isEmpty())
+                .map(GrantedAuthorities::of)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return Collections.unmodifiableSet(authorities);
+    }
+}
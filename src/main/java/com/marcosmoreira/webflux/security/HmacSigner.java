@@ -0,0 +1,44 @@
+package com.marcosmoreira.webflux.security;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+public class HmacSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    //Mac instances are not thread safe
+    private final ThreadLocal<Mac> mac;
+
+    public HmacSigner(byte[] secret) {
+        SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public static HmacSigner withRandomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return new HmacSigner(secret);
+    }
+
+    public byte[] sign(byte[]... parts) {
+        Mac instance = mac.get();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                instance.update((byte) 0);
+            }
+            instance.update(parts[i]);
+        }
+        return instance.doFinal();
+    }
+}
@@ -0,0 +1,161 @@
+package com.marcosmoreira.webflux.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+ * Sheds load before any handler or database work runs: 429 when a caller goes over its rate on a route, 503 when
+ * the node already has maxInFlight requests running. Each caller and route has a token bucket kept as a single
+ * AtomicLong (GCRA: the time at which the bucket is full again), so admitting a request is one CAS and no lock.
+ * Only configured routes get buckets of their own, every other path shares the caller's default bucket, and the
+ * number of buckets is capped, so requesting random paths neither grows memory nor escapes the limit.
+ * Sits after authentication in the security chain so callers are told apart by principal, not only by address.
+ */
+public class RateLimitWebFilter implements WebFilter {
+
+    //anime ids and ingest tracking ids, so a configured route like GET /animes/{id} matches every id
+    private static final String OTHER_ROUTES = "*";
+
+    private static final Pattern ID_SEGMENT = Pattern.compile("/(\\d+|[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12})(?=/|$)");
+
+    private final AnimeProperties.RateLimit properties;
+    private final Map<String, Bucket> routeBuckets;
+    private final Bucket defaultBucket;
+    private final Cache<String, AtomicLong> states;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongSupplier nanoTime;
+    private final Counter rateLimited;
+    private final Counter shed;
+
+    public RateLimitWebFilter(AnimeProperties.RateLimit properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RateLimitWebFilter(AnimeProperties.RateLimit properties, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.properties = properties;
+        this.nanoTime = nanoTime;
+        this.defaultBucket = new Bucket(properties.getDefaultLimit().getRequestsPerSecond(),
+                properties.getDefaultLimit().getBurst());
+        this.routeBuckets = properties.getRoutes().stream()
+                .collect(Collectors.toMap(route -> route.getMethod() + " " + route.getPath(),
+                        route -> new Bucket(route.getRequestsPerSecond(), route.getBurst()),
+                        (first, second) -> second));
+        this.states = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxBuckets())
+                .expireAfterAccess(properties.getIdleTimeout())
+                .build();
+
+        meterRegistry.gauge("http.server.requests.in.flight", inFlight);
+        this.rateLimited = Counter.builder("http.server.requests.rejected").tag("reason", "rate_limit")
+                .register(meterRegistry);
+        this.shed = Counter.builder("http.server.requests.rejected").tag("reason", "in_flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        //probes and scrapes must get through when the node is saturated
+        if (!properties.isEnabled() || path.startsWith("/actuator")) {
+            return chain.filter(exchange);
+        }
+
+        String route = exchange.getRequest().getMethodValue() + " " + ID_SEGMENT.matcher(path).replaceAll("/{id}");
+        String limitedRoute = routeBuckets.containsKey(route) ? route : OTHER_ROUTES;
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(authentication -> authentication.isAuthenticated()
+                        && !(authentication instanceof AnonymousAuthenticationToken))
+                .map(Authentication::getName)
+                .switchIfEmpty(Mono.fromSupplier(() -> anonymous(exchange)))
+                .flatMap(caller -> admit(exchange, chain, caller, limitedRoute));
+    }
+
+    private Mono<Void> admit(ServerWebExchange exchange, WebFilterChain chain, String caller, String route) {
+        Bucket bucket = routeBuckets.getOrDefault(route, defaultBucket);
+        long now = nanoTime.getAsLong();
+        AtomicLong state = states.get(caller + ' ' + route, key -> new AtomicLong(now));
+        long waitNanos = bucket.tryAcquire(state, now);
+        if (waitNanos > 0) {
+            rateLimited.increment();
+            return reject(exchange, HttpStatus.TOO_MANY_REQUESTS, waitNanos, route.equals(OTHER_ROUTES)
+                    ? "Rate limit exceeded" : "Rate limit exceeded for " + route);
+        }
+
+        if (inFlight.incrementAndGet() > properties.getMaxInFlight()) {
+            inFlight.decrementAndGet();
+            shed.increment();
+            return reject(exchange, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1), "Server is busy");
+        }
+        return chain.filter(exchange)
+                //a revalidation answered with 304 is what a polling client should do, so it is not charged
+                .doOnSuccess(done -> {
+                    if (exchange.getResponse().getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                        bucket.refund(state);
+                    }
+                })
+                .doFinally(signal -> inFlight.decrementAndGet());
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, HttpStatus status, long waitNanos, String reason) {
+        long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        return Mono.error(new ResponseStatusException(status, reason));
+    }
+
+    private static String anonymous(ServerWebExchange exchange) {
+        InetSocketAddress address = exchange.getRequest().getRemoteAddress();
+        return address == null ? "anonymous" : "anonymous@" + address.getHostString();
+    }
+
+    private static final class Bucket {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+
+        private Bucket(double requestsPerSecond, int burst) {
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+            this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+        }
+
+        //0 when the request may pass, otherwise how long until it would
+        private long tryAcquire(AtomicLong fullAt, long now) {
+            while (true) {
+                long current = fullAt.get();
+                long start = Math.max(current, now);
+                if (start - toleranceNanos > now) {
+                    return start - toleranceNanos - now;
+                }
+                if (fullAt.compareAndSet(current, start + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        private void refund(AtomicLong fullAt) {
+            fullAt.addAndGet(-intervalNanos);
+        }
+    }
+}
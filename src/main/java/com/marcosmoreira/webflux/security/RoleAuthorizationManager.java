@@ -0,0 +1,37 @@
+package com.marcosmoreira.webflux.security;
+
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+/*
+ * hasRole for pathMatchers without the per request Flux over the authorities that
+ * AuthorityReactiveAuthorizationManager builds. AbstractAuthenticationToken copies the authorities into an
+ * unmodifiable list, so contains() is a scan over the user's few roles; they are interned by GrantedAuthorities,
+ * so each comparison usually ends at the identity check in SimpleGrantedAuthority.equals.
+ */
+public final class RoleAuthorizationManager implements ReactiveAuthorizationManager<AuthorizationContext> {
+
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private final GrantedAuthority authority;
+
+    private RoleAuthorizationManager(GrantedAuthority authority) {
+        this.authority = authority;
+    }
+
+    public static RoleAuthorizationManager hasRole(String role) {
+        return new RoleAuthorizationManager(GrantedAuthorities.of("ROLE_" + role));
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> check(Mono<Authentication> authentication, AuthorizationContext context) {
+        return authentication
+                .map(auth -> auth.isAuthenticated() && auth.getAuthorities().contains(authority) ? GRANTED : DENIED)
+                .defaultIfEmpty(DENIED);
+    }
+}
@@ -0,0 +1,19 @@
+package com.marcosmoreira.webflux.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class TokenAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final TokenService tokenService;
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        return Mono.justOrEmpty(tokenService.verify(authentication.getCredentials().toString()))
+                .switchIfEmpty(Mono.error(new BadCredentialsException("Invalid token")));
+    }
+}
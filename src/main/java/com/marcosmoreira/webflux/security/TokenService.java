@@ -0,0 +1,84 @@
+package com.marcosmoreira.webflux.security;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.TokenResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/*
+ * Signed bearer tokens: base64url(username \n expires-at \n authorities) "." base64url(hmac-sha256).
+ * Verifying one is a single HMAC computation, no database lookup and no bcrypt.
+ */
+@Slf4j
+@Component
+public class TokenService {
+
+    private static final String TOKEN_TYPE = "Bearer";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final HmacSigner signer;
+    private final Duration timeToLive;
+
+    public TokenService(AnimeProperties animeProperties) {
+        AnimeProperties.Token properties = animeProperties.getSecurity().getToken();
+        this.timeToLive = properties.getTimeToLive();
+
+        if (StringUtils.hasText(properties.getSecret())) {
+            this.signer = new HmacSigner(Base64.getDecoder().decode(properties.getSecret()));
+        } else {
+            if (properties.isEnabled()) {
+                log.warn("anime.security.token.secret is not set, tokens are only valid on this node until it restarts");
+            }
+            this.signer = HmacSigner.withRandomSecret();
+        }
+    }
+
+    public TokenResponse issue(Authentication authentication) {
+        String payload = String.join("\n",
+                authentication.getName(),
+                String.valueOf(Instant.now().plus(timeToLive).getEpochSecond()),
+                String.join(",", AuthorityUtils.authorityListToSet(authentication.getAuthorities())));
+
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        String signature = ENCODER.encodeToString(signer.sign(encodedPayload.getBytes(StandardCharsets.US_ASCII)));
+
+        return new TokenResponse(encodedPayload + "." + signature, TOKEN_TYPE, timeToLive.getSeconds());
+    }
+
+    public Optional<Authentication> verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator < 0) {
+            return Optional.empty();
+        }
+
+        try {
+            String encodedPayload = token.substring(0, separator);
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, signer.sign(encodedPayload.getBytes(StandardCharsets.US_ASCII)))) {
+                return Optional.empty();
+            }
+
+            String[] claims = new String(DECODER.decode(encodedPayload), StandardCharsets.UTF_8).split("\n", -1);
+            if (claims.length != 3 || Instant.now().getEpochSecond() >= Long.parseLong(claims[1])) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new UsernamePasswordAuthenticationToken(claims[0], null,
+                    GrantedAuthorities.parse(claims[2])));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.marcosmoreira.webflux.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/*
+ * Remembers successful password checks so that bcrypt runs once per user and TTL instead of once per request.
+ * Only an HMAC of the presented password is kept, keyed with a secret that never leaves this process, and the
+ * stored password hash is part of the HMAC so that a password change invalidates the entry by itself.
+ */
+@Component
+public class VerifiedCredentialCache {
+
+    private final Cache<String, byte[]> cache;
+    private final HmacSigner signer = HmacSigner.withRandomSecret();
+
+    public VerifiedCredentialCache(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        AnimeProperties.Cache properties = animeProperties.getSecurity().getCredentialCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "verified-credentials");
+    }
+
+    public boolean isVerified(String username, String encodedPassword, String presentedPassword) {
+        byte[] verified = cache.getIfPresent(username);
+        return verified != null && MessageDigest.isEqual(verified, digest(encodedPassword, presentedPassword));
+    }
+
+    public void verified(String username, String encodedPassword, String presentedPassword) {
+        cache.put(username, digest(encodedPassword, presentedPassword));
+    }
+
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+
+    private byte[] digest(String encodedPassword, String presentedPassword) {
+        return signer.sign(encodedPassword.getBytes(StandardCharsets.UTF_8),
+                presentedPassword.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,132 @@
+package com.marcosmoreira.webflux.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcosmoreira.webflux.cache.AnimeNameIndex;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.AnimeImportReject;
+import com.marcosmoreira.webflux.domain.AnimeImportResult;
+import com.marcosmoreira.webflux.repository.AnimeRepository;
+import io.netty.util.internal.StringUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnimeImportService {
+
+    private static final int MAX_REPORTED_REJECTS = 100;
+    private static final ResolvableType STRING_TYPE = ResolvableType.forClass(String.class);
+    private static final StringDecoder LINE_DECODER = StringDecoder.allMimeTypes(List.of("\n"), true);
+
+    private final AnimeRepository animeRepository;
+    private final AnimeNameIndex animeNameIndex;
+    private final AnimeProperties animeProperties;
+    private final ObjectMapper objectMapper;
+
+    public Mono<AnimeImportResult> importNdjson(Flux<DataBuffer> body) {
+        return importLines(body, this::parseNdjson, false);
+    }
+
+    public Mono<AnimeImportResult> importCsv(Flux<DataBuffer> body) {
+        return importLines(body, this::parseCsv, true);
+    }
+
+    //every chunk is committed on its own, so a failure half way keeps what was already imported
+    private Mono<AnimeImportResult> importLines(Flux<DataBuffer> body, Function<String, AnimeDomain> parser,
+                                                boolean optionalHeader) {
+        int chunkSize = animeProperties.getBatch().getChunkSize();
+
+        return Mono.defer(() -> {
+            ImportProgress progress = new ImportProgress();
+
+            return LINE_DECODER.decode(body, STRING_TYPE, null, Collections.emptyMap())
+                    .index()
+                    .filter(line -> !line.getT2().isBlank())
+                    .filter(line -> !(optionalHeader && line.getT1() == 0 && isHeader(line.getT2())))
+                    .<AnimeDomain>handle((line, sink) -> {
+                        try {
+                            sink.next(validate(parser.apply(line.getT2().strip())));
+                        } catch (IllegalArgumentException e) {
+                            progress.reject(line.getT1() + 1, e.getMessage());
+                        }
+                    })
+                    .buffer(chunkSize)
+                    .concatMap(chunk -> animeRepository.insertAll(chunk, chunkSize)
+                            .doOnNext(animeNameIndex::put)
+                            .count(), 1)
+                    .doOnNext(progress::imported)
+                    .then(Mono.fromCallable(progress::toResult));
+        });
+    }
+
+    private AnimeDomain parseNdjson(String line) {
+        try {
+            return objectMapper.readValue(line, AnimeDomain.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed json: " + e.getOriginalMessage());
+        }
+    }
+
+    private static boolean isHeader(String line) {
+        return line.strip().equalsIgnoreCase("name");
+    }
+
+    //a single name column, optionally quoted
+    private AnimeDomain parseCsv(String line) {
+        if (!line.startsWith("\"")) {
+            if (line.indexOf(',') >= 0) {
+                throw new IllegalArgumentException("Expected a single name column");
+            }
+            return AnimeDomain.builder().name(line).build();
+        }
+
+        if (line.length() < 2 || !line.endsWith("\"")) {
+            throw new IllegalArgumentException("Unterminated quoted name");
+        }
+        return AnimeDomain.builder()
+                .name(line.substring(1, line.length() - 1).replace("\"\"", "\""))
+                .build();
+    }
+
+    private AnimeDomain validate(AnimeDomain animeDomain) {
+        if (animeDomain == null || StringUtil.isNullOrEmpty(animeDomain.getName())) {
+            throw new IllegalArgumentException("Invalid name");
+        }
+        return animeDomain.withId(null);
+    }
+
+    private static class ImportProgress {
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final List<AnimeImportReject> rejects = new ArrayList<>();
+
+        void imported(long count) {
+            log.info("Anime import progress: {} rows imported, {} rejected", imported.addAndGet(count), rejected.get());
+        }
+
+        void reject(long line, String reason) {
+            if (rejected.incrementAndGet() <= MAX_REPORTED_REJECTS) {
+                rejects.add(new AnimeImportReject(line, reason));
+            }
+        }
+
+        AnimeImportResult toResult() {
+            return new AnimeImportResult(imported.get(), rejected.get(), rejects);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.marcosmoreira.webflux.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.marcosmoreira.webflux.cache.AnimeNameIndex;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.AnimeIngestStatus;
+import com.marcosmoreira.webflux.repository.AnimeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.internal.StringUtil;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind ingestion: animes are queued in memory and answered with a tracking id, then inserted in
+ * batches by a single drainer. Queued animes are lost if the process dies, so this is only for callers that
+ * can replay; on a graceful shutdown the queue is drained before the connection pool closes.
+ */
+@Slf4j
+@Service
+public class AnimeIngestService implements SmartLifecycle {
+
+    private static final String METRICS_PREFIX = "anime.ingest";
+
+    private final AnimeRepository animeRepository;
+    private final AnimeNameIndex animeNameIndex;
+    private final AnimeProperties.Ingest properties;
+    private final int chunkSize;
+
+    //multi producer, single consumer; the counter reserves a slot before the offer so the queue stays bounded
+    private final Queue<Pending> queue = Queues.<Pending>unboundedMultiproducer().get();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicReference<Runnable> onDrained = new AtomicReference<>();
+    private final Cache<String, AnimeIngestStatus> statuses;
+
+    private final Timer lag;
+    private final Counter stored;
+    private final Counter failed;
+    private final Counter rejected;
+
+    private volatile boolean running;
+    private volatile Disposable ticker;
+
+    public AnimeIngestService(AnimeRepository animeRepository, AnimeNameIndex animeNameIndex,
+                              AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        this.animeRepository = animeRepository;
+        this.animeNameIndex = animeNameIndex;
+        this.properties = animeProperties.getIngest();
+        this.chunkSize = animeProperties.getBatch().getChunkSize();
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(properties.getStatus().getMaximumSize())
+                .expireAfterWrite(properties.getStatus().getTimeToLive())
+                .build();
+
+        this.lag = Timer.builder(METRICS_PREFIX + ".lag")
+                .description("Time from an anime being queued to being stored")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.stored = rows("stored", meterRegistry);
+        this.failed = rows("failed", meterRegistry);
+        this.rejected = rows("rejected", meterRegistry);
+        Gauge.builder(METRICS_PREFIX + ".queue.size", queued, AtomicInteger::get)
+                .description("Animes waiting for the next flush")
+                .register(meterRegistry);
+    }
+
+    public Mono<AnimeIngestStatus> ingest(AnimeDomain animeDomain) {
+        return Mono.fromCallable(() -> {
+            if (StringUtil.isNullOrEmpty(animeDomain.getName())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid name");
+            }
+            //reserve first, then check running, so stop() cannot miss an anime that is about to be offered
+            if (queued.incrementAndGet() > properties.getCapacity() || !running) {
+                queued.decrementAndGet();
+                rejected.increment();
+                throw running
+                        ? new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Ingest queue is full")
+                        : new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Ingestion is stopped");
+            }
+
+            AnimeIngestStatus status = new AnimeIngestStatus(UUID.randomUUID().toString(),
+                    AnimeIngestStatus.State.QUEUED, null);
+            statuses.put(status.getTrackingId(), status);
+            queue.offer(new Pending(animeDomain.getName(), status.getTrackingId(), System.nanoTime()));
+            flush(false);
+            return status;
+        });
+    }
+
+    public Mono<AnimeIngestStatus> status(String trackingId) {
+        return Mono.justOrEmpty(statuses.getIfPresent(trackingId))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Unknown or expired tracking id")));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        ticker = Flux.interval(properties.getFlushInterval()).subscribe(tick -> {
+            flush(true);
+            signalIfDrained();
+        });
+    }
+
+    //new animes are refused right away, the callback runs once everything already queued is stored or failed
+    @Override
+    public void stop(Runnable callback) {
+        running = false;
+        onDrained.set(callback);
+        flush(true);
+        signalIfDrained();
+    }
+
+    @Override
+    public void stop() {
+        stop(() -> {
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    //stopped after the web server, so requests accepted during its graceful shutdown are still drained
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2;
+    }
+
+    //force is set by the ticker and on shutdown; producers only trigger a flush once a full batch is queued
+    private void flush(boolean force) {
+        int pending = queued.get();
+        if (pending == 0 || (!force && pending < properties.getBatchSize()) || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+
+        List<Pending> batch = new ArrayList<>(Math.min(pending, properties.getBatchSize()));
+        Pending next;
+        while (batch.size() < properties.getBatchSize() && (next = queue.poll()) != null) {
+            batch.add(next);
+        }
+        queued.addAndGet(-batch.size());
+
+        insert(batch)
+                .doFinally(signal -> {
+                    flushing.set(false);
+                    if (batch.isEmpty()) {
+                        //reserved but not offered yet, the next tick picks it up
+                        return;
+                    }
+                    if (!running || queued.get() >= properties.getBatchSize()) {
+                        flush(!running);
+                    }
+                    signalIfDrained();
+                })
+                .subscribe();
+    }
+
+    //insertAll emits the stored rows in the order of its input, so the nth row belongs to the nth tracking id
+    private Mono<Void> insert(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+
+        AtomicInteger done = new AtomicInteger();
+        List<AnimeDomain> animes = batch.stream()
+                .map(pending -> AnimeDomain.builder().name(pending.getName()).build())
+                .collect(Collectors.toList());
+        return animeRepository.insertAll(animes, chunkSize)
+                .doOnNext(animeNameIndex::put)
+                .doOnNext(anime -> {
+                    Pending pending = batch.get(done.getAndIncrement());
+                    statuses.put(pending.getTrackingId(), new AnimeIngestStatus(pending.getTrackingId(),
+                            AnimeIngestStatus.State.STORED, anime.getId()));
+                    lag.record(System.nanoTime() - pending.getQueuedAt(), TimeUnit.NANOSECONDS);
+                    stored.increment();
+                })
+                .then()
+                //chunks already inserted stay stored, only the rest of the batch is reported as failed
+                .onErrorResume(error -> {
+                    List<Pending> lost = batch.subList(done.get(), batch.size());
+                    log.warn("Ingest flush failed, {} of {} animes were not stored", lost.size(), batch.size(), error);
+                    lost.forEach(pending -> statuses.put(pending.getTrackingId(), new AnimeIngestStatus(
+                            pending.getTrackingId(), AnimeIngestStatus.State.FAILED, null)));
+                    failed.increment(lost.size());
+                    return Mono.empty();
+                });
+    }
+
+    private void signalIfDrained() {
+        if (running || queued.get() > 0 || flushing.get()) {
+            return;
+        }
+        Runnable callback = onDrained.getAndSet(null);
+        if (callback != null) {
+            Disposable current = ticker;
+            if (current != null) {
+                current.dispose();
+            }
+            callback.run();
+        }
+    }
+
+    private static Counter rows(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder(METRICS_PREFIX + ".animes")
+                .description("Animes accepted for write-behind ingestion, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Value
+    private static class Pending {
+        String name;
+        String trackingId;
+        long queuedAt;
+    }
+}
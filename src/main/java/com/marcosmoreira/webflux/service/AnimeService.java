@@ -1,31 +1,137 @@
 package com.marcosmoreira.webflux.service;
 
+import com.marcosmoreira.webflux.cache.AnimeCache;
+import com.marcosmoreira.webflux.cache.AnimeNameIndex;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeBatchResult;
 import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.AnimePage;
+import com.marcosmoreira.webflux.r2dbc.ReplicaRoutingConnectionFactory;
 import com.marcosmoreira.webflux.repository.AnimeRepository;
 import io.netty.util.internal.StringUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.NoTransactionException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AnimeService {
 
+    //reactor.flow.* meters, tagged with the method so each pipeline shows up separately
+    private static final String METRICS_NAME = "anime.service";
+
+    //merge patch member -> column; members outside this map are rejected so request keys never reach the SQL
+    private static final Map<String, String> PATCHABLE_COLUMNS = Map.of("name", "name");
+
     private final AnimeRepository animeRepository;
+    private final AnimeProperties animeProperties;
+    private final AnimeCache animeCache;
+    private final AnimeNameIndex animeNameIndex;
 
     public Flux<AnimeDomain> findAll() {
-        return animeRepository.findAll();
+        return ReplicaRoutingConnectionFactory.readOnly(animeRepository.findAll())
+                .name(METRICS_NAME).tag("method", "findAll").metrics();
+    }
+
+    public Mono<String> catalogVersion() {
+        return ReplicaRoutingConnectionFactory.readOnly(animeRepository.catalogVersion())
+                .name(METRICS_NAME).tag("method", "catalogVersion").metrics();
+    }
+
+    //the catalog is read after its version and from the same database, so it is never older than the version it
+    //is tagged with; a newer one only costs the client a 200 on its next revalidation
+    public Mono<Tuple2<String, Flux<AnimeDomain>>> findAllWithVersion() {
+        Context pinned = ReplicaRoutingConnectionFactory.pinned();
+        Flux<AnimeDomain> animes = findAll().subscriberContext(pinned);
+        return catalogVersion().subscriberContext(pinned).map(version -> Tuples.of(version, animes));
+    }
+
+    public Flux<AnimeDomain> streamAll() {
+        int fetchSize = animeProperties.getStream().getFetchSize();
+        //limitRate keeps client demand and database fetches in step, so a slow consumer slows down the read
+        return ReplicaRoutingConnectionFactory.readOnly(animeRepository.streamAll(fetchSize))
+                .limitRate(fetchSize)
+                .name(METRICS_NAME).tag("method", "streamAll").metrics();
+    }
+
+    public Mono<AnimePage> findPage(String cursor, Integer size) {
+        return Mono.fromCallable(() -> decodeCursor(cursor))
+                .flatMap(afterId -> {
+                    int pageSize = resolvePageSize(size);
+                    //one extra row tells us whether there is a next page without a count query
+                    return ReplicaRoutingConnectionFactory.readOnly(animeRepository.findPageAfter(afterId,
+                            pageSize + 1))
+                            .collectList()
+                            .map(animes -> toPage(animes, pageSize));
+                })
+                .name(METRICS_NAME).tag("method", "findPage").metrics();
+    }
+
+    //prefix matches first, the substring query only runs for what is left of the limit
+    public Flux<AnimeDomain> search(String query, Integer limit) {
+        int resolvedLimit = resolveLimit(limit, animeProperties.getSearch().getDefaultLimit(),
+                animeProperties.getSearch().getMaxLimit());
+        return Mono.fromCallable(() -> escapeLikePattern(validateSearchTerm(query)))
+                .flatMapMany(term -> searchByPrefix(term, resolvedLimit)
+                        .collectList()
+                        .flatMapMany(prefixMatches -> Flux.fromIterable(prefixMatches)
+                                .concatWith(prefixMatches.size() < resolvedLimit
+                                        ? searchBySubstring(term, resolvedLimit - prefixMatches.size())
+                                        : Flux.empty())))
+                .name(METRICS_NAME).tag("method", "search").metrics();
+    }
+
+    private Flux<AnimeDomain> searchByPrefix(String term, int limit) {
+        return ReplicaRoutingConnectionFactory.readOnly(animeRepository.searchByPrefix(term + "%", limit));
+    }
+
+    private Flux<AnimeDomain> searchBySubstring(String term, int limit) {
+        return ReplicaRoutingConnectionFactory.readOnly(animeRepository.searchBySubstring(
+                "%" + term + "%", term + "%", limit));
+    }
+
+    //answered from memory, the database is not touched
+    public Flux<AnimeDomain> suggest(String prefix, Integer limit) {
+        return Flux.defer(() -> {
+            if (!animeNameIndex.isLoaded()) {
+                return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Name index is still loading"));
+            }
+            if (prefix == null || prefix.isBlank()) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid prefix"));
+            }
+            return Flux.fromIterable(animeNameIndex.suggest(prefix, resolveLimit(limit,
+                    animeProperties.getSuggest().getDefaultLimit(), animeProperties.getSuggest().getMaxLimit())));
+        })
+                .name(METRICS_NAME).tag("method", "suggest").metrics();
     }
 
     public Mono<AnimeDomain> findById(int id) {
-        return animeRepository.findById(id)
-                .switchIfEmpty(monoResponseStatusNotFoundException());
+        //loaded from the primary, a row read from a lagging replica would be served stale for the whole TTL
+        return animeCache.get(id, key -> animeRepository.findById(key.intValue()))
+                .switchIfEmpty(monoResponseStatusNotFoundException())
+                .name(METRICS_NAME).tag("method", "findById").metrics();
     }
 
     public <T> Mono<T> monoResponseStatusNotFoundException() {
@@ -33,25 +139,227 @@ public class AnimeService {
     }
 
     public Mono<AnimeDomain> save(AnimeDomain animeDomain) {
-        return animeRepository.save(animeDomain);
+        return animeRepository.save(animeDomain)
+                .doOnNext(animeCache::put)
+                .doOnNext(animeNameIndex::put)
+                .name(METRICS_NAME).tag("method", "save").metrics();
     }
 
-    public Mono<Void> update(AnimeDomain animeDomain, int id) {
-        return findById(id)
-                .map(animeFound -> animeDomain.withId(animeFound.getId()))
-                .flatMap(animeRepository::save)
-                .then();
+    //expectedVersion comes from If-Match, null updates whatever version is stored
+    public Mono<AnimeDomain> update(AnimeDomain animeDomain, int id, Long expectedVersion) {
+        return animeRepository.updateIfMatches(id, animeDomain.getName(), expectedVersion)
+                .switchIfEmpty(Mono.defer(() -> notFoundOrModified(id, expectedVersion)))
+                .doOnNext(animeCache::put)
+                .doOnNext(animeNameIndex::put)
+                .name(METRICS_NAME).tag("method", "update").metrics();
+    }
+
+    //JSON merge patch: only the members present are written, in one UPDATE like update()
+    public Mono<AnimeDomain> patch(int id, Map<String, Object> patch, Long expectedVersion) {
+        return Mono.fromCallable(() -> toPatchColumns(patch))
+                .flatMap(columns -> animeRepository.patchIfMatches(id, columns, expectedVersion))
+                .switchIfEmpty(Mono.defer(() -> notFoundOrModified(id, expectedVersion)))
+                .doOnNext(animeCache::put)
+                .doOnNext(animeNameIndex::put)
+                .name(METRICS_NAME).tag("method", "patch").metrics();
+    }
+
+    public Mono<Void> delete(int id, Long expectedVersion) {
+        return animeRepository.deleteIfMatches(id, expectedVersion)
+                .flatMap(deleted -> deleted > 0 ? Mono.<Void>empty() : notFoundOrModified(id, expectedVersion))
+                .doOnSuccess(deleted -> {
+                    animeCache.evict(id);
+                    animeNameIndex.remove(id);
+                })
+                .name(METRICS_NAME).tag("method", "delete").metrics();
     }
 
-    public Mono<Void> delete(int id) {
-        return findById(id)
-                .flatMap(animeRepository::delete);
+    //a single statement is atomic on its own, so no transaction is opened around it
+    public Mono<AnimeBatchResult> updateAll(List<AnimeDomain> animes) {
+        return Mono.fromCallable(() -> validateBatchUpdate(animes))
+                .flatMap(batch -> animeRepository.updateNames(batch)
+                        .doOnNext(animeCache::put)
+                        .doOnNext(animeNameIndex::put)
+                        .map(AnimeDomain::getId)
+                        .collect(Collectors.toSet())
+                        .map(updated -> toBatchResult(batch.stream().map(AnimeDomain::getId)
+                                .collect(Collectors.toList()), updated)))
+                .name(METRICS_NAME).tag("method", "updateAll").metrics();
+    }
+
+    public Mono<AnimeBatchResult> deleteAll(List<Integer> ids) {
+        return Mono.fromCallable(() -> validateBatchIds(ids))
+                .flatMap(batch -> animeRepository.deleteByIds(batch)
+                        .doOnNext(id -> {
+                            animeCache.evict(id);
+                            animeNameIndex.remove(id);
+                        })
+                        .collect(Collectors.toSet())
+                        .map(deleted -> toBatchResult(batch, deleted)))
+                .name(METRICS_NAME).tag("method", "deleteAll").metrics();
     }
 
     @Transactional
     public Flux<AnimeDomain> saveAll(List<AnimeDomain> animeDomain) {
-        return animeRepository.saveAll(animeDomain)
-                .doOnNext(this::throwResponseStatusExceptionWhenEmptyName);
+        //validate the whole batch before the first row is written
+        return Mono.fromRunnable(() -> {
+                    validateBatchSize(animeDomain);
+                    animeDomain.forEach(this::throwResponseStatusExceptionWhenEmptyName);
+                })
+                .thenMany(Flux.defer(() -> animeRepository.insertAll(animeDomain,
+                        animeProperties.getBatch().getChunkSize())))
+                //a later chunk failing rolls the earlier ones back, so the index only learns of them on commit
+                .collectList()
+                .flatMapMany(saved -> afterCommit(() -> saved.forEach(animeNameIndex::put))
+                        .thenMany(Flux.fromIterable(saved)))
+                .name(METRICS_NAME).tag("method", "saveAll").metrics();
+    }
+
+    //runs right away when there is no transaction, every statement has then already committed
+    private static Mono<Void> afterCommit(Runnable action) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .map(synchronizations -> {
+                    synchronizations.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public Mono<Void> afterCommit() {
+                            return Mono.fromRunnable(action);
+                        }
+                    });
+                    return true;
+                })
+                .onErrorResume(NoTransactionException.class, e -> Mono.empty())
+                .switchIfEmpty(Mono.fromRunnable(action))
+                .then();
+    }
+
+    //only reached when the conditional statement touched no row, so the happy path stays a single round trip
+    private <T> Mono<T> notFoundOrModified(int id, Long expectedVersion) {
+        animeCache.evict(id);
+        if (expectedVersion == null) {
+            return monoResponseStatusNotFoundException();
+        }
+        return animeRepository.existsById(id)
+                .flatMap(exists -> exists
+                        ? Mono.<T>error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                                "Anime was modified since it was read"))
+                        : monoResponseStatusNotFoundException());
+    }
+
+    private List<Integer> validateBatchIds(List<Integer> ids) {
+        validateBatchSize(ids);
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid id");
+        }
+        return List.copyOf(new LinkedHashSet<>(ids));
+    }
+
+    private List<AnimeDomain> validateBatchUpdate(List<AnimeDomain> animes) {
+        validateBatchSize(animes);
+        Set<Integer> ids = new HashSet<>();
+        for (AnimeDomain anime : animes) {
+            throwResponseStatusExceptionWhenEmptyName(anime);
+            //unnest would hand the same row two names and postgres would keep either one
+            if (anime.getId() == null || !ids.add(anime.getId())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid or repeated id");
+            }
+        }
+        return animes;
+    }
+
+    private void validateBatchSize(List<?> batch) {
+        if (batch == null || batch.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Empty batch");
+        }
+        if (batch.size() > animeProperties.getBatch().getMaxSize()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch must have at most " + animeProperties.getBatch().getMaxSize() + " entries");
+        }
+    }
+
+    private static AnimeBatchResult toBatchResult(List<Integer> requested, Set<Integer> affected) {
+        Map<Boolean, List<Integer>> outcomes = requested.stream()
+                .collect(Collectors.partitioningBy(affected::contains));
+        return new AnimeBatchResult(outcomes.get(true), outcomes.get(false));
+    }
+
+    private static Map<String, Object> toPatchColumns(Map<String, Object> patch) {
+        if (patch == null || patch.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Patch has no members");
+        }
+
+        Map<String, Object> columns = new LinkedHashMap<>();
+        patch.forEach((member, value) -> {
+            String column = PATCHABLE_COLUMNS.get(member);
+            if (column == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Member cannot be patched: " + member);
+            }
+            //null would remove the member, but every patchable column is NOT NULL
+            if (!(value instanceof String) || StringUtil.isNullOrEmpty((String) value)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid " + member);
+            }
+            columns.put(column, value);
+        });
+        return columns;
+    }
+
+    private AnimePage toPage(List<AnimeDomain> animes, int pageSize) {
+        if (animes.size() <= pageSize) {
+            return new AnimePage(animes, null);
+        }
+
+        List<AnimeDomain> content = animes.subList(0, pageSize);
+        return new AnimePage(content, encodeCursor(content.get(pageSize - 1).getId()));
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return animeProperties.getPage().getDefaultSize();
+        }
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+        }
+        return Math.min(size, animeProperties.getPage().getMaxSize());
+    }
+
+    private String validateSearchTerm(String query) {
+        String term = query == null ? "" : query.strip();
+        if (term.length() < animeProperties.getSearch().getMinLength()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Search term must have at least " + animeProperties.getSearch().getMinLength() + " characters");
+        }
+        return term;
+    }
+
+    private static int resolveLimit(Integer limit, int defaultLimit, int maxLimit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid limit");
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    //so a user typing % or _ searches for that character instead of matching everything
+    private static String escapeLikePattern(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String encodeCursor(int lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCursor(String cursor) {
+        if (StringUtil.isNullOrEmpty(cursor)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
     }
 
     private void throwResponseStatusExceptionWhenEmptyName(AnimeDomain animeDomain) {
@@ -1,5 +1,6 @@
 package com.marcosmoreira.webflux.service;
 
+import com.marcosmoreira.webflux.cache.UserDetailsCache;
 import com.marcosmoreira.webflux.repository.DevDojoUserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
@@ -12,10 +13,12 @@ import reactor.core.publisher.Mono;
 public class DevDojoUserDetailsService implements ReactiveUserDetailsService {
 
     private final DevDojoUserRepository devDojoUserRepository;
+    private final UserDetailsCache userDetailsCache;
 
     @Override
     public Mono<UserDetails> findByUsername(String username) {
-        return devDojoUserRepository.findByUsername(username)
-                .cast(UserDetails.class);
+        //loaded from the primary, like findById, so a lagging replica can't pin an old password for the TTL
+        return userDetailsCache.get(username, key -> devDojoUserRepository.findByUsername(key)
+                .cast(UserDetails.class));
     }
-}
\ No newline at end of file
+}
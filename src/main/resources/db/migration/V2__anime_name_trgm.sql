@@ -0,0 +1,4 @@
+-- lets name ILIKE '%term%' use an index instead of scanning the table, see AnimeRepository.searchByName
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS anime_name_trgm_idx ON anime.anime USING gin (name gin_trgm_ops);
@@ -0,0 +1,2 @@
+-- optimistic locking column for AnimeDomain, also used as the ETag of /animes/{id}
+ALTER TABLE anime.anime ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
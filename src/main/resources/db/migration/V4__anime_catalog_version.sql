@@ -0,0 +1,25 @@
+-- the catalog version is the sum of these slots, so GET /animes reads its ETag without touching anime.
+-- every statement that writes anime bumps the slot of its own connection: concurrent writers update different rows
+-- instead of queueing on one, and the bump commits with the write, a reader never sees the new version before the new rows
+CREATE TABLE IF NOT EXISTS anime.anime_catalog_slot
+(
+    slot    INT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO anime.anime_catalog_slot (slot, version)
+SELECT slot, 0 FROM generate_series(0, 63) AS slot
+ON CONFLICT (slot) DO NOTHING;
+
+-- single quoted body: the script runner splits on every semicolon outside of quotes
+CREATE OR REPLACE FUNCTION anime.bump_anime_catalog_version() RETURNS trigger LANGUAGE plpgsql AS
+'BEGIN UPDATE anime.anime_catalog_slot SET version = version + 1 WHERE slot = pg_backend_pid() % 64; RETURN NULL; END';
+
+DROP TRIGGER IF EXISTS anime_catalog_version ON anime.anime;
+
+CREATE TRIGGER anime_catalog_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON anime.anime
+    FOR EACH STATEMENT EXECUTE PROCEDURE anime.bump_anime_catalog_version();
+
+-- replaced by anime_catalog_slot, its single row serialized every writer
+DROP TABLE IF EXISTS anime.anime_catalog;
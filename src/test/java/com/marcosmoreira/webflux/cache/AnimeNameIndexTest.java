@@ -0,0 +1,94 @@
+package com.marcosmoreira.webflux.cache;
+
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class AnimeNameIndexTest {
+
+    private AnimeNameIndex animeNameIndex;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        animeNameIndex = new AnimeNameIndex(meterRegistry);
+        animeNameIndex.load(anime(1, "Naruto"));
+        animeNameIndex.load(anime(2, "Naruto Shippuden"));
+        animeNameIndex.load(anime(3, "Pokémon"));
+        animeNameIndex.markLoaded();
+    }
+
+    @Test
+    @DisplayName("suggest returns names starting with the prefix ignoring case and accents, up to the limit")
+    public void suggest_ReturnsPrefixMatches() {
+        Assertions.assertEquals(List.of(anime(1, "Naruto"), anime(2, "Naruto Shippuden")),
+                animeNameIndex.suggest("NAR", 10));
+        Assertions.assertEquals(List.of(anime(1, "Naruto")), animeNameIndex.suggest("nar", 1));
+        Assertions.assertEquals(List.of(anime(3, "Pokémon")), animeNameIndex.suggest("pokem", 10));
+        Assertions.assertTrue(animeNameIndex.suggest("x", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("put replaces the previous name of the same anime and remove drops it")
+    public void put_ReplacesPreviousName_WhenAnimeIsUpdated() {
+        animeNameIndex.put(anime(1, "Boruto"));
+
+        Assertions.assertEquals(List.of(anime(2, "Naruto Shippuden")), animeNameIndex.suggest("naruto", 10));
+        Assertions.assertEquals(List.of(anime(1, "Boruto")), animeNameIndex.suggest("bor", 10));
+
+        animeNameIndex.remove(1);
+
+        Assertions.assertTrue(animeNameIndex.suggest("bor", 10).isEmpty());
+        Assertions.assertEquals(2.0, meterRegistry.get("anime.name.index.size").gauge().value());
+    }
+
+    @Test
+    @DisplayName("load does not overwrite an anime that was written while the index was loading")
+    public void load_KeepsWrites_WhenTheyHappenDuringLoad() {
+        AnimeNameIndex loading = new AnimeNameIndex(new SimpleMeterRegistry());
+        loading.put(anime(1, "Boruto"));
+        loading.load(anime(1, "Naruto"));
+        loading.markLoaded();
+
+        Assertions.assertEquals(List.of(anime(1, "Boruto")), loading.suggest("", 10));
+    }
+
+    @Test
+    @DisplayName("compact merges the writes into the snapshot without changing the suggestions")
+    public void compact_KeepsWrites_WhenMergingThemIntoTheSnapshot() {
+        animeNameIndex.put(anime(1, "Boruto"));
+        animeNameIndex.put(anime(4, "Naruto: The Last"));
+        animeNameIndex.remove(3);
+
+        animeNameIndex.compact();
+
+        Assertions.assertEquals(List.of(anime(1, "Boruto"), anime(2, "Naruto Shippuden"),
+                anime(4, "Naruto: The Last")), animeNameIndex.suggest("", 10));
+        Assertions.assertEquals(3.0, meterRegistry.get("anime.name.index.size").gauge().value());
+    }
+
+    @Test
+    @DisplayName("memory gauge grows with entries and goes back to zero when they are removed and compacted")
+    public void memoryGauge_TracksEntries() {
+        double memory = meterRegistry.get("anime.name.index.memory").gauge().value();
+        Assertions.assertTrue(memory > 0);
+
+        animeNameIndex.remove(1);
+        animeNameIndex.remove(2);
+        animeNameIndex.remove(3);
+        animeNameIndex.compact();
+
+        Assertions.assertEquals(0.0, meterRegistry.get("anime.name.index.memory").gauge().value());
+    }
+
+    private static AnimeDomain anime(int id, String name) {
+        return AnimeDomain.builder().id(id).name(name).build();
+    }
+}
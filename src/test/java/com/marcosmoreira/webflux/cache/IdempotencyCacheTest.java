@@ -0,0 +1,129 @@
+package com.marcosmoreira.webflux.cache;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import java.security.Principal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class IdempotencyCacheTest {
+
+    private final IdempotencyCache idempotencyCache = new IdempotencyCache(new AnimeProperties(), new SimpleMeterRegistry());
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final Principal marcos = () -> "marcos";
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @Test
+    @DisplayName("execute runs the action every time when there is no key")
+    public void execute_RunsAction_WhenKeyIsNull() {
+        StepVerifier.create(execute(null, "anime").then(execute(null, "anime")))
+                .expectNext(2)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("execute replays the first response for a repeated key")
+    public void execute_ReplaysResponse_WhenKeyIsRepeated() {
+        StepVerifier.create(execute("key", "anime").then(execute("key", "anime")))
+                .expectNext(1)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, executions.get());
+    }
+
+    @Test
+    @DisplayName("execute runs the action once for concurrent requests with the same key")
+    public void execute_CoalescesInFlightRequests_WhenKeyIsRepeated() {
+        MonoProcessor<Integer> insert = MonoProcessor.create();
+        Mono<Integer> first = idempotencyCache.execute(marcos, "key", "save", "anime", () -> {
+            executions.incrementAndGet();
+            return insert;
+        });
+        Mono<Integer> second = idempotencyCache.execute(marcos, "key", "save", "anime", () -> {
+            executions.incrementAndGet();
+            return insert;
+        });
+
+        StepVerifier.create(first.zipWith(second))
+                .then(() -> insert.onNext(7))
+                .expectNextMatches(responses -> responses.getT1() == 7 && responses.getT2() == 7)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, executions.get());
+    }
+
+    @Test
+    @DisplayName("execute returns unprocessable entity when the key was used for another request")
+    public void execute_ReturnMonoError_WhenRequestDiffers() {
+        StepVerifier.create(execute("key", "anime").then(execute("key", "another anime")))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.UNPROCESSABLE_ENTITY)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("execute returns unprocessable entity when requests with the same hash code differ")
+    public void execute_ReturnMonoError_WhenDifferentRequestHasSameHashCode() {
+        Assertions.assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        StepVerifier.create(execute("key", "Aa").then(execute("key", "BB")))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.UNPROCESSABLE_ENTITY)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("execute returns unprocessable entity when the key was used for another operation")
+    public void execute_ReturnMonoError_WhenOperationDiffers() {
+        StepVerifier.create(execute("key", "anime")
+                        .then(idempotencyCache.execute(marcos, "key", "saveBatch", "anime",
+                                () -> Mono.fromCallable(executions::incrementAndGet))))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("execute runs the action again after a failure")
+    public void execute_RunsActionAgain_WhenFirstExecutionFailed() {
+        Mono<Integer> failing = idempotencyCache.execute(marcos, "key", "save", "anime",
+                () -> Mono.error(new IllegalStateException("database down")));
+
+        StepVerifier.create(failing)
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        StepVerifier.create(execute("key", "anime"))
+                .expectNext(1)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("execute keeps the keys of different users apart")
+    public void execute_RunsAction_WhenKeyBelongsToAnotherUser() {
+        StepVerifier.create(execute("key", "anime")
+                .then(idempotencyCache.execute(() -> "moreira", "key", "save", "anime",
+                        () -> Mono.fromCallable(executions::incrementAndGet))))
+                .expectNext(2)
+                .verifyComplete();
+    }
+
+    private Mono<Integer> execute(String key, String request) {
+        return idempotencyCache.execute(marcos, key, "save", request, () -> Mono.fromCallable(executions::incrementAndGet));
+    }
+}
@@ -1,8 +1,17 @@
 package com.marcosmoreira.webflux.controller;
 
+import com.marcosmoreira.webflux.cache.IdempotencyCache;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeBatchResult;
 import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.AnimeImportResult;
+import com.marcosmoreira.webflux.domain.AnimeIngestStatus;
+import com.marcosmoreira.webflux.domain.AnimePage;
+import com.marcosmoreira.webflux.service.AnimeImportService;
+import com.marcosmoreira.webflux.service.AnimeIngestService;
 import com.marcosmoreira.webflux.service.AnimeService;
 import com.marcosmoreira.webflux.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,18 +21,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.BDDMockito;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
+import reactor.util.function.Tuples;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 
 @ExtendWith(SpringExtension.class)
@@ -35,6 +53,15 @@ class AnimeControllerTest {
     @Mock
     private AnimeService animeService;
 
+    @Mock
+    private AnimeImportService animeImportService;
+
+    @Mock
+    private AnimeIngestService animeIngestService;
+
+    @Spy
+    private IdempotencyCache idempotencyCache = new IdempotencyCache(new AnimeProperties(), new SimpleMeterRegistry());
+
     private final AnimeDomain animeDomain = AnimeCreator.createValidAnime();
 
     @BeforeAll
@@ -44,24 +71,42 @@ class AnimeControllerTest {
 
     @BeforeEach
     public void setup() {
-        BDDMockito.when(animeService.findAll())
+        BDDMockito.when(animeService.findAllWithVersion())
+                .thenReturn(Mono.just(Tuples.of("42", Flux.just(animeDomain))));
+
+        BDDMockito.when(animeService.streamAll())
                 .thenReturn(Flux.just(animeDomain));
 
+        BDDMockito.when(animeService.findPage(null, 10))
+                .thenReturn(Mono.just(new AnimePage(List.of(animeDomain), null)));
+
         BDDMockito.when(animeService.findById(anyInt()))
                 .thenReturn(Mono.just(animeDomain));
 
+        BDDMockito.when(animeService.search("naru", null))
+                .thenReturn(Flux.just(animeDomain));
+
+        BDDMockito.when(animeService.suggest("na", 5))
+                .thenReturn(Flux.just(animeDomain));
+
         BDDMockito.when(animeService.save(AnimeCreator.createAnimeToBeSaved()))
                 .thenReturn(Mono.just(animeDomain));
 
-        BDDMockito.when(animeService.delete(anyInt()))
+        BDDMockito.when(animeService.delete(anyInt(), any()))
                 .thenReturn(Mono.empty());
 
-        BDDMockito.when(animeService.update(AnimeCreator.createValidUpdatedAnime(), 1))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeService.update(AnimeCreator.createValidUpdatedAnime(), 1, null))
+                .thenReturn(Mono.just(AnimeCreator.createValidUpdatedAnime().withVersion(1L)));
+
+        BDDMockito.when(animeService.update(AnimeCreator.createValidUpdatedAnime(), 1, 0L))
+                .thenReturn(Mono.just(AnimeCreator.createValidUpdatedAnime().withVersion(1L)));
 
         BDDMockito.when(animeService.saveAll(List.of(AnimeCreator.createAnimeToBeSaved(),
                 AnimeCreator.createAnimeToBeSaved())))
                 .thenReturn(Flux.just(animeDomain, animeDomain));
+
+        BDDMockito.when(animeImportService.importNdjson(any()))
+                .thenReturn(Mono.just(new AnimeImportResult(1, 0, List.of())));
     }
 
     @Test
@@ -81,9 +126,50 @@ class AnimeControllerTest {
     }
 
     @Test
-    @DisplayName("listAll returns a flux of anime")
+    @DisplayName("listAll returns a flux of anime tagged with the catalog version")
     public void listAll_ReturnFluxOfAnime_WhenSuccessful() {
         StepVerifier.create(animeController.listAll())
+                .expectSubscription()
+                .assertNext(response -> Assertions.assertEquals("\"42\"", response.getHeaders().getETag()))
+                .verifyComplete();
+
+        StepVerifier.create(animeController.listAll().flatMapMany(ResponseEntity::getBody))
+                .expectSubscription()
+                .expectNext(animeDomain)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("streamAll returns a flux of anime")
+    public void streamAll_ReturnFluxOfAnime_WhenSuccessful() {
+        StepVerifier.create(animeController.streamAll())
+                .expectSubscription()
+                .expectNext(animeDomain)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("listPage returns a page of anime")
+    public void listPage_ReturnPageOfAnime_WhenSuccessful() {
+        StepVerifier.create(animeController.listPage(null, 10))
+                .expectSubscription()
+                .expectNext(new AnimePage(List.of(animeDomain), null))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search returns a flux of matching anime")
+    public void search_ReturnFluxOfAnime_WhenSuccessful() {
+        StepVerifier.create(animeController.search("naru", null))
+                .expectSubscription()
+                .expectNext(animeDomain)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("suggest returns a flux of anime starting with the prefix")
+    public void suggest_ReturnFluxOfAnime_WhenSuccessful() {
+        StepVerifier.create(animeController.suggest("na", 5))
                 .expectSubscription()
                 .expectNext(animeDomain)
                 .verifyComplete();
@@ -94,7 +180,10 @@ class AnimeControllerTest {
     public void findById_ReturnMonoAnime_WhenSuccessful() {
         StepVerifier.create(animeController.findById(1))
                 .expectSubscription()
-                .expectNext(animeDomain)
+                .assertNext(response -> {
+                    Assertions.assertEquals(animeDomain, response.getBody());
+                    Assertions.assertEquals("\"0\"", response.getHeaders().getETag());
+                })
                 .verifyComplete();
     }
 
@@ -104,7 +193,7 @@ class AnimeControllerTest {
     public void save_CreatesAnime_WhenSuccessful(){
         AnimeDomain animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
 
-        StepVerifier.create(animeController.save(animeToBeSaved))
+        StepVerifier.create(animeController.save(animeToBeSaved, null, null))
                 .expectSubscription()
                 .expectNext(animeDomain)
                 .verifyComplete();
@@ -113,28 +202,161 @@ class AnimeControllerTest {
     @Test
     @DisplayName("delete removes then anime when successful")
     public void delete_RemovesAnime_WhenSuccessful(){
-        StepVerifier.create(animeController.delete(1))
+        StepVerifier.create(animeController.delete(1, null))
                 .expectSubscription()
                 .verifyComplete();
     }
 
     @Test
-    @DisplayName("update save updated anime and returns empty mono when successful")
+    @DisplayName("update save updated anime and returns the new ETag when successful")
     public void update_SaveUpdatedAnime_WhenSuccessful(){
-        StepVerifier.create(animeController.update(1, AnimeCreator.createValidUpdatedAnime()))
+        StepVerifier.create(animeController.update(1, AnimeCreator.createValidUpdatedAnime(), null))
                 .expectSubscription()
+                .assertNext(response -> Assertions.assertEquals("\"1\"", response.getHeaders().getETag()))
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("patch applies the merge patch and returns the new ETag when successful")
+    public void patch_UpdatesAnime_WhenSuccessful(){
+        BDDMockito.when(animeService.patch(1, Map.of("name", "Nome de um anime 2"), 0L))
+                .thenReturn(Mono.just(AnimeCreator.createValidUpdatedAnime().withVersion(1L)));
+
+        StepVerifier.create(animeController.patch(1, Map.of("name", "Nome de um anime 2"), "\"0\""))
+                .expectSubscription()
+                .assertNext(response -> Assertions.assertEquals("\"1\"", response.getHeaders().getETag()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("updateBatch returns the outcome of each id")
+    public void updateBatch_ReturnsBatchResult_WhenSuccessful(){
+        BDDMockito.when(animeService.updateAll(List.of(AnimeCreator.createValidUpdatedAnime())))
+                .thenReturn(Mono.just(new AnimeBatchResult(List.of(1), List.of())));
+
+        StepVerifier.create(animeController.updateBatch(List.of(AnimeCreator.createValidUpdatedAnime())))
+                .expectSubscription()
+                .expectNext(new AnimeBatchResult(List.of(1), List.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("deleteBatch returns the outcome of each id")
+    public void deleteBatch_ReturnsBatchResult_WhenSuccessful(){
+        BDDMockito.when(animeService.deleteAll(List.of(1, 2)))
+                .thenReturn(Mono.just(new AnimeBatchResult(List.of(1), List.of(2))));
+
+        StepVerifier.create(animeController.deleteBatch(List.of(1, 2)))
+                .expectSubscription()
+                .expectNext(new AnimeBatchResult(List.of(1), List.of(2)))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("update passes the version from If-Match to the service")
+    public void update_PassesIfMatchVersion_WhenHeaderIsPresent(){
+        StepVerifier.create(animeController.update(1, AnimeCreator.createValidUpdatedAnime(), "\"0\""))
+                .expectSubscription()
+                .expectNextCount(1)
+                .verifyComplete();
+
+        BDDMockito.verify(animeService).update(AnimeCreator.createValidUpdatedAnime(), 1, 0L);
+    }
+
+    @Test
+    @DisplayName("update returns Mono error with precondition failed when If-Match is not one of our ETags")
+    public void update_ReturnMonoErrorPreconditionFailed_WhenIfMatchIsInvalid(){
+        StepVerifier.create(animeController.update(1, AnimeCreator.createValidUpdatedAnime(), "W/\"0\""))
+                .expectSubscription()
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.PRECONDITION_FAILED)
+                .verify();
+    }
+
     @Test
     @DisplayName("saveBatch creates a list of anime when successfull")
     public void saveBatch_CreatesListOfAnime_WhenSuccessful(){
         AnimeDomain animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
 
-        StepVerifier.create(animeController.saveBatch(List.of(animeToBeSaved, animeToBeSaved)))
+        StepVerifier.create(animeController.saveBatch(List.of(animeToBeSaved, animeToBeSaved), null, null))
                 .expectSubscription()
                 .expectNext(animeDomain, animeDomain)
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("save replays the first response when the request is retried with the same Idempotency-Key")
+    public void save_ReplaysResponse_WhenIdempotencyKeyIsRepeated(){
+        AnimeDomain animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+
+        StepVerifier.create(animeController.save(animeToBeSaved, "retry-1", null)
+                .concatWith(animeController.save(animeToBeSaved, "retry-1", null)))
+                .expectSubscription()
+                .expectNext(animeDomain, animeDomain)
+                .verifyComplete();
+
+        BDDMockito.verify(animeService, BDDMockito.times(1)).save(animeToBeSaved);
+    }
+
+    @Test
+    @DisplayName("save replays the first response when saving set the id and version of the anime it was given")
+    public void save_ReplaysResponse_WhenSavingModifiedTheAnime(){
+        AnimeDomain animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+        BDDMockito.when(animeService.save(AnimeCreator.createAnimeToBeSaved()))
+                .thenAnswer(invocation -> {
+                    AnimeDomain saved = invocation.getArgument(0);
+                    saved.setId(1);
+                    saved.setVersion(0L);
+                    return Mono.just(saved);
+                });
+
+        StepVerifier.create(animeController.save(animeToBeSaved, "retry-1", null)
+                .concatWith(animeController.save(AnimeCreator.createAnimeToBeSaved(), "retry-1", null)))
+                .expectSubscription()
+                .expectNextCount(2)
+                .verifyComplete();
+
+        Assertions.assertNull(animeToBeSaved.getId());
+    }
+
+    @Test
+    @DisplayName("importNdjson returns the import result when successful")
+    public void importNdjson_ReturnsImportResult_WhenSuccessful(){
+        StepVerifier.create(animeController.importNdjson(Flux.empty()))
+                .expectSubscription()
+                .expectNext(new AnimeImportResult(1, 0, List.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("ingest accepts the anime and points to its tracking status")
+    public void ingest_ReturnsAccepted_WhenQueued(){
+        AnimeIngestStatus queued = new AnimeIngestStatus("tracking-1", AnimeIngestStatus.State.QUEUED, null);
+        BDDMockito.when(animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()))
+                .thenReturn(Mono.just(queued));
+
+        StepVerifier.create(animeController.ingest(AnimeCreator.createAnimeToBeSaved(), new MockServerHttpResponse()))
+                .expectSubscription()
+                .assertNext(response -> {
+                    Assertions.assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+                    Assertions.assertEquals("/animes/ingest/tracking-1", response.getHeaders().getLocation().toString());
+                    Assertions.assertEquals(queued, response.getBody());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("ingest returns too many requests with Retry-After when the queue is full")
+    public void ingest_ReturnsTooManyRequests_WhenQueueIsFull(){
+        BDDMockito.when(animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()))
+                .thenReturn(Mono.error(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS)));
+        MockServerHttpResponse response = new MockServerHttpResponse();
+
+        StepVerifier.create(animeController.ingest(AnimeCreator.createAnimeToBeSaved(), response))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        Assertions.assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+package com.marcosmoreira.webflux.controller;
+
+import com.marcosmoreira.webflux.cache.IdempotencyCache;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.config.SecurityConfig;
+import com.marcosmoreira.webflux.domain.DevDojoUserDomain;
+import com.marcosmoreira.webflux.domain.TokenRequest;
+import com.marcosmoreira.webflux.domain.TokenResponse;
+import com.marcosmoreira.webflux.security.TokenService;
+import com.marcosmoreira.webflux.security.VerifiedCredentialCache;
+import com.marcosmoreira.webflux.service.AnimeImportService;
+import com.marcosmoreira.webflux.service.AnimeIngestService;
+import com.marcosmoreira.webflux.service.AnimeService;
+import com.marcosmoreira.webflux.service.DevDojoUserDetailsService;
+import com.marcosmoreira.webflux.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+
+import java.util.Base64;
+
+import static org.mockito.ArgumentMatchers.anyString;
+
+//the security chain of token mode in front of the real controllers, with the services and users mocked
+@ExtendWith(SpringExtension.class)
+@WebFluxTest(controllers = {AuthController.class, AnimeController.class},
+        properties = "anime.security.token.enabled=true")
+@Import({SecurityConfig.class, AnimeProperties.class, TokenService.class, VerifiedCredentialCache.class,
+        SimpleMeterRegistry.class})
+class AuthControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean
+    private DevDojoUserDetailsService devDojoUserDetailsService;
+
+    @MockBean
+    private AnimeService animeService;
+
+    @MockBean
+    private AnimeImportService animeImportService;
+
+    @MockBean
+    private AnimeIngestService animeIngestService;
+
+    @MockBean
+    private IdempotencyCache idempotencyCache;
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() {
+        BDDMockito.when(devDojoUserDetailsService.findByUsername(anyString()))
+                .thenReturn(Mono.empty());
+
+        BDDMockito.when(devDojoUserDetailsService.findByUsername("marcos"))
+                .thenReturn(Mono.just(new DevDojoUserDomain(1, "Marcos", "marcos", "{noop}devdojo",
+                        "ROLE_USER,ROLE_ADMIN")));
+
+        BDDMockito.when(animeService.findById(1))
+                .thenReturn(Mono.just(AnimeCreator.createValidAnime()));
+    }
+
+    @Test
+    @DisplayName("token returns a bearer token that authenticates later requests when the credentials are valid")
+    public void token_ReturnsBearerToken_WhenCredentialsAreValid() {
+        TokenResponse token = requestToken("marcos", "devdojo")
+                .expectStatus().isOk()
+                .expectBody(TokenResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        Assertions.assertNotNull(token);
+        Assertions.assertEquals("Bearer", token.getTokenType());
+
+        client.get()
+                .uri("/animes/1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.getAccessToken())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Nome de um anime");
+    }
+
+    @Test
+    @DisplayName("token returns unauthorized when the password is wrong")
+    public void token_ReturnsUnauthorized_WhenPasswordIsWrong() {
+        requestToken("marcos", "wrong")
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    @DisplayName("token returns unauthorized when the user does not exist")
+    public void token_ReturnsUnauthorized_WhenUserDoesNotExist() {
+        requestToken("unknown", "devdojo")
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    @DisplayName("animes returns unauthorized when the request has no bearer token")
+    public void findById_ReturnsUnauthorized_WhenTokenIsMissing() {
+        client.get()
+                .uri("/animes/1")
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    @DisplayName("animes returns unauthorized when the bearer token was tampered with")
+    public void findById_ReturnsUnauthorized_WhenTokenIsTampered() {
+        TokenResponse token = requestToken("marcos", "devdojo")
+                .expectBody(TokenResponse.class)
+                .returnResult()
+                .getResponseBody();
+        Assertions.assertNotNull(token);
+
+        //swap the payload for one claiming another user while keeping the original signature
+        String signature = token.getAccessToken().substring(token.getAccessToken().indexOf('.'));
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("moreira\n9999999999\nROLE_ADMIN,ROLE_USER".getBytes());
+
+        client.get()
+                .uri("/animes/1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + payload + signature)
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    @DisplayName("basic authentication is rejected in token mode even with valid credentials")
+    public void findById_ReturnsUnauthorized_WhenUsingBasicAuth() {
+        client.get()
+                .uri("/animes/1")
+                .headers(headers -> headers.setBasicAuth("marcos", "devdojo"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    @DisplayName("form login is disabled in token mode, posting credentials to /login does not log in")
+    public void login_ReturnsUnauthorized_WhenFormLoginIsDisabled() {
+        client.post()
+                .uri("/login")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData("username", "marcos").with("password", "devdojo"))
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectHeader().doesNotExist(HttpHeaders.SET_COOKIE);
+    }
+
+    private WebTestClient.ResponseSpec requestToken(String username, String password) {
+        return client.post()
+                .uri("/auth/token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new TokenRequest(username, password))
+                .exchange();
+    }
+}
@@ -1,5 +1,9 @@
 package com.marcosmoreira.webflux.integration;
 
+import com.marcosmoreira.webflux.WebfluxApplication;
+import com.marcosmoreira.webflux.cache.AnimeCache;
+import com.marcosmoreira.webflux.cache.AnimeNameIndexLoader;
+import com.marcosmoreira.webflux.config.CodecConfig;
 import com.marcosmoreira.webflux.domain.AnimeDomain;
 import com.marcosmoreira.webflux.repository.AnimeRepository;
 import com.marcosmoreira.webflux.util.AnimeCreator;
@@ -14,16 +18,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.BodyInserters;
-import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.test.publisher.PublisherProbe;
 
 import java.util.List;
 import java.util.concurrent.FutureTask;
@@ -31,10 +37,11 @@ import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest
+//the repository is mocked, so there is no schema to migrate
+@SpringBootTest(properties = "anime.schema.migrate=false")
 @AutoConfigureWebTestClient
 public class AnimeControllerIT {
     private final static String REGULAR_USER = "moreira";
@@ -43,16 +50,24 @@ public class AnimeControllerIT {
     @MockBean
     private AnimeRepository animeRepository;
 
+    //it would stream from the mocked repository on startup, before any stub is in place
+    @MockBean
+    private AnimeNameIndexLoader animeNameIndexLoader;
+
     @Autowired
     private WebTestClient client;
 
+    @Autowired
+    private AnimeCache animeCache;
+
     private final AnimeDomain animeDomain = AnimeCreator.createValidAnime();
 
+    //version is read-only in JSON, so it never comes back through the decoder
+    private final AnimeDomain decodedAnimeDomain = animeDomain.withVersion(null);
+
     @BeforeAll
     public static void blockHound() {
-        BlockHound.install(
-                builder -> builder.allowBlockingCallsInside("java.util.UUID", "randomUUID")
-        );
+        WebfluxApplication.installBlockHound();
     }
 
     @Test
@@ -73,23 +88,28 @@ public class AnimeControllerIT {
 
     @BeforeEach
     public void setup() {
+        animeCache.evictAll();
+
         BDDMockito.when(animeRepository.findAll())
                 .thenReturn(Flux.just(animeDomain));
 
+        BDDMockito.when(animeRepository.catalogVersion())
+                .thenReturn(Mono.just("42"));
+
         BDDMockito.when(animeRepository.findById(anyInt()))
                 .thenReturn(Mono.just(animeDomain));
 
         BDDMockito.when(animeRepository.save(AnimeCreator.createAnimeToBeSaved()))
                 .thenReturn(Mono.just(animeDomain));
 
-        BDDMockito.when(animeRepository.delete(any(AnimeDomain.class)))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.deleteIfMatches(anyInt(), any()))
+                .thenReturn(Mono.just(1));
 
-        BDDMockito.when(animeRepository.save(AnimeCreator.createValidUpdatedAnime()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.updateIfMatches(anyInt(), anyString(), any()))
+                .thenReturn(Mono.just(animeDomain.withVersion(1L)));
 
-        BDDMockito.when(animeRepository.saveAll(List.of(AnimeCreator.createAnimeToBeSaved(),
-                        AnimeCreator.createAnimeToBeSaved())))
+        BDDMockito.when(animeRepository.insertAll(List.of(AnimeCreator.createAnimeToBeSaved(),
+                        AnimeCreator.createAnimeToBeSaved()), 500))
                 .thenReturn(Flux.just(animeDomain, animeDomain));
     }
 
@@ -124,7 +144,40 @@ public class AnimeControllerIT {
                 .exchange()
                 .expectBodyList(AnimeDomain.class)
                 .hasSize(1)
-                .contains(animeDomain);
+                .contains(decodedAnimeDomain);
+    }
+
+    @Test
+    @DisplayName("streamAll returns anime as newline delimited json when user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    public void streamAll_ReturnNdjsonOfAnime_WhenSuccessful() {
+        BDDMockito.when(animeRepository.streamAll(anyInt()))
+                .thenReturn(Flux.just(animeDomain));
+
+        client.get()
+                .uri("/animes")
+                .accept(CodecConfig.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(CodecConfig.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo("{\"id\":1,\"name\":\"Nome de um anime\",\"version\":0}\n");
+    }
+
+    @Test
+    @DisplayName("listPage returns a page of anime when user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    public void listPage_ReturnPageOfAnime_WhenSuccessful() {
+        BDDMockito.when(animeRepository.findPageAfter(anyInt(), anyInt()))
+                .thenReturn(Flux.just(animeDomain));
+
+        client.get()
+                .uri("/animes/page?size={size}", 10)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo(animeDomain.getId())
+                .jsonPath("$.nextCursor").doesNotExist();
     }
 
     @Test
@@ -136,7 +189,37 @@ public class AnimeControllerIT {
                 .exchange()
                 .expectStatus().isOk()
                 .expectBody(AnimeDomain.class)
-                .isEqualTo(animeDomain);
+                .isEqualTo(decodedAnimeDomain);
+    }
+
+    @Test
+    @DisplayName("findById returns not modified without a body when the ETag matches")
+    @WithUserDetails(REGULAR_USER)
+    public void findById_ReturnNotModified_WhenETagMatches() {
+        client.get()
+                .uri("/animes/{id}", 1)
+                .ifNoneMatch("\"0\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("findAll returns not modified without reading the catalog when the ETag matches")
+    @WithUserDetails(ADMIN_USER)
+    public void findAll_ReturnNotModified_WhenETagMatches() {
+        PublisherProbe<AnimeDomain> catalog = PublisherProbe.of(Flux.just(animeDomain));
+        BDDMockito.when(animeRepository.findAll())
+                .thenReturn(catalog.flux());
+
+        client.get()
+                .uri("/animes")
+                .ifNoneMatch("\"42\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        catalog.assertWasNotSubscribed();
     }
 
     @Test
@@ -168,7 +251,7 @@ public class AnimeControllerIT {
                 .exchange()
                 .expectStatus().isCreated()
                 .expectBody(AnimeDomain.class)
-                .isEqualTo(animeDomain);
+                .isEqualTo(decodedAnimeDomain);
     }
 
     @Test
@@ -185,7 +268,7 @@ public class AnimeControllerIT {
                 .expectStatus().isCreated()
                 .expectBodyList(AnimeDomain.class)
                 .hasSize(2)
-                .contains(animeDomain);
+                .contains(decodedAnimeDomain);
     }
 
     @Test
@@ -210,9 +293,6 @@ public class AnimeControllerIT {
     public void saveBatch_ReturnsMonoError_WhenContainsInvalidName(){
         AnimeDomain animeToBeSaved = AnimeCreator.createAnimeToBeSaved().withName("");
 
-        BDDMockito.when(animeRepository.saveAll(anyIterable()))
-                .thenReturn(Flux.just(animeDomain, animeDomain.withName("")));
-
         client.post()
                 .uri("/animes/batch")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -238,8 +318,8 @@ public class AnimeControllerIT {
     @DisplayName("delete returns Mono error when anime does not exist and user is successfully authenticated and has role ADMIN")
     @WithUserDetails(ADMIN_USER)
     public void delete_ReturnMonoError_WhenEmptyMonoIsReturned(){
-        BDDMockito.when(animeRepository.findById(anyInt()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.deleteIfMatches(anyInt(), any()))
+                .thenReturn(Mono.just(0));
 
         client.delete()
                 .uri("/animes/{id}", 1)
@@ -254,22 +334,38 @@ public class AnimeControllerIT {
     @DisplayName("update save updated anime and returns empty mono when successful and user is successfully authenticated and has role ADMIN")
     @WithUserDetails(ADMIN_USER)
     public void update_SaveUpdatedAnime_WhenSuccessful(){
-        BDDMockito.when(animeRepository.findById(anyInt()))
-                .thenReturn(Mono.just(AnimeCreator.createAnimeToBeSaved()));
+        client.put()
+                .uri("/animes/{id}", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(animeDomain))
+                .exchange()
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+    }
+
+    @Test
+    @DisplayName("update returns precondition failed when If-Match is stale and user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    public void update_ReturnPreconditionFailed_WhenIfMatchIsStale(){
+        BDDMockito.when(animeRepository.updateIfMatches(1, animeDomain.getName(), 0L))
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.existsById(1))
+                .thenReturn(Mono.just(true));
 
         client.put()
                 .uri("/animes/{id}", 1)
                 .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
                 .body(BodyInserters.fromValue(animeDomain))
                 .exchange()
-                .expectStatus().isNoContent();
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
     }
 
     @Test
     @DisplayName("update returns Mono error when anime does not exist and user is successfully authenticated and has role ADMIN")
     @WithUserDetails(ADMIN_USER)
     public void update_ReturnMonoError_WhenEmptyMonoIsReturned(){
-        BDDMockito.when(animeRepository.findById(anyInt()))
+        BDDMockito.when(animeRepository.updateIfMatches(anyInt(), anyString(), any()))
                 .thenReturn(Mono.empty());
 
         client.put()
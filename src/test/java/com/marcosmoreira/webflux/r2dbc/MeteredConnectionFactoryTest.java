@@ -0,0 +1,80 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+class MeteredConnectionFactoryTest {
+
+    private MeteredConnectionFactory meteredConnectionFactory;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private ConnectionFactory connectionPool;
+
+    @Mock
+    private Connection connection;
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        meteredConnectionFactory = new MeteredConnectionFactory(connectionPool, "connectionPool", meterRegistry);
+    }
+
+    @Test
+    @DisplayName("create records the acquire time as success when the pool hands out a connection")
+    public void create_RecordsSuccess_WhenConnectionIsAcquired() {
+        BDDMockito.doReturn(Mono.just(connection)).when(connectionPool).create();
+
+        StepVerifier.create(meteredConnectionFactory.create())
+                .expectSubscription()
+                .expectNext(connection)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, acquireCount("success"));
+        Assertions.assertEquals(0, acquireCount("error"));
+    }
+
+    @Test
+    @DisplayName("create records the acquire time as error when the pool times out")
+    public void create_RecordsError_WhenAcquireFails() {
+        BDDMockito.doReturn(Mono.error(new IllegalStateException("Timeout"))).when(connectionPool).create();
+
+        StepVerifier.create(meteredConnectionFactory.create())
+                .expectSubscription()
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        Assertions.assertEquals(0, acquireCount("success"));
+        Assertions.assertEquals(1, acquireCount("error"));
+    }
+
+    @Test
+    @DisplayName("unwrap returns the wrapped pool")
+    public void unwrap_ReturnsDelegate() {
+        Assertions.assertSame(connectionPool, meteredConnectionFactory.unwrap());
+    }
+
+    private long acquireCount(String outcome) {
+        return meterRegistry.get("r2dbc.pool.acquire").tag("outcome", outcome).timer().count();
+    }
+}
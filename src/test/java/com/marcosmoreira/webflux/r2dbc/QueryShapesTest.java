@@ -0,0 +1,39 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class QueryShapesTest {
+
+    @Test
+    @DisplayName("normalize replaces literals and bind markers")
+    public void normalize_ReplacesLiteralsAndBindMarkers() {
+        Assertions.assertEquals("SELECT * FROM anime WHERE id > ? AND name = ? ORDER BY id LIMIT ?",
+                QueryShapes.normalize("SELECT * FROM anime WHERE id > $1 AND name = 'Naruto''s'\n ORDER BY id LIMIT 21"));
+    }
+
+    @Test
+    @DisplayName("normalize keeps type casts while replacing named bind markers")
+    public void normalize_KeepsTypeCasts() {
+        Assertions.assertEquals("SELECT sum(version)::text FROM anime_catalog_slot WHERE slot = ?",
+                QueryShapes.normalize("SELECT sum(version)::text FROM anime_catalog_slot WHERE slot = :slot"));
+    }
+
+    @Test
+    @DisplayName("normalize collapses multi-row VALUES lists of any length into one shape")
+    public void normalize_CollapsesValuesLists() {
+        String twoRows = QueryShapes.normalize("INSERT INTO anime (name) VALUES ($1), ($2) RETURNING *");
+        String threeRows = QueryShapes.normalize("INSERT INTO anime (name) VALUES ($1), ($2), ($3) RETURNING *");
+
+        Assertions.assertEquals("INSERT INTO anime (name) VALUES (?), ... RETURNING *", twoRows);
+        Assertions.assertEquals(twoRows, threeRows);
+    }
+
+    @Test
+    @DisplayName("normalize collapses IN lists")
+    public void normalize_CollapsesInLists() {
+        Assertions.assertEquals("DELETE FROM anime WHERE id IN (?, ...)",
+                QueryShapes.normalize("DELETE FROM anime WHERE id IN (1, 2, 3)"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class QueryStatisticsTest {
+
+    private QueryStatistics queryStatistics;
+
+    @BeforeEach
+    public void setup() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getR2dbc().getSlowQuery().setMaxShapes(2);
+        queryStatistics = new QueryStatistics(animeProperties);
+    }
+
+    @Test
+    @DisplayName("summaries aggregates executions per shape, slowest total first")
+    public void summaries_AggregatesPerShape() {
+        queryStatistics.record("SELECT ?", 1_000_000, true);
+        queryStatistics.record("SELECT ?", 3_000_000, false);
+        queryStatistics.record("DELETE ?", 10_000_000, true);
+
+        List<QueryStatistics.QuerySummary> summaries = queryStatistics.summaries();
+
+        Assertions.assertEquals("DELETE ?", summaries.get(0).getQuery());
+        QueryStatistics.QuerySummary select = summaries.get(1);
+        Assertions.assertEquals(2, select.getCount());
+        Assertions.assertEquals(1, select.getErrors());
+        Assertions.assertEquals(2.0, select.getMeanMillis());
+        Assertions.assertEquals(3.0, select.getMaxMillis());
+    }
+
+    @Test
+    @DisplayName("record puts new shapes under (other) once max-shapes is reached")
+    public void record_UsesOther_WhenMaxShapesIsReached() {
+        queryStatistics.record("SELECT ?", 1, true);
+        queryStatistics.record("DELETE ?", 1, true);
+        queryStatistics.record("UPDATE ?", 1, true);
+
+        Assertions.assertTrue(queryStatistics.summaries().stream()
+                .anyMatch(summary -> summary.getQuery().equals(QueryStatistics.OTHER)));
+        Assertions.assertEquals(3, queryStatistics.summaries().size());
+    }
+}
@@ -0,0 +1,172 @@
+package com.marcosmoreira.webflux.r2dbc;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ExtendWith(SpringExtension.class)
+class ReplicaRoutingConnectionFactoryTest {
+
+    private ReplicaRoutingConnectionFactory routingConnectionFactory;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final Map<String, Integer> connectionsInUse = new HashMap<>();
+
+    @Mock
+    private ConnectionFactory primary;
+
+    @Mock
+    private ConnectionFactory replica0;
+
+    @Mock
+    private ConnectionFactory replica1;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection replica0Connection;
+
+    @Mock
+    private Connection replica1Connection;
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        Map<String, ConnectionFactory> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replica0);
+        replicas.put("replica-1", replica1);
+        routingConnectionFactory = new ReplicaRoutingConnectionFactory(primary, replicas,
+                replica -> connectionsInUse.getOrDefault(replica, 0), meterRegistry);
+
+        BDDMockito.doReturn(Mono.just(primaryConnection)).when(primary).create();
+        BDDMockito.doReturn(Mono.just(replica0Connection)).when(replica0).create();
+        BDDMockito.doReturn(Mono.just(replica1Connection)).when(replica1).create();
+    }
+
+    @Test
+    @DisplayName("create hands out a primary connection when the caller did not mark itself read-only")
+    public void create_ReturnsPrimary_WhenNotReadOnly() {
+        StepVerifier.create(routingConnectionFactory.create())
+                .expectNext(primaryConnection)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, routed("primary", "read_write"));
+    }
+
+    @Test
+    @DisplayName("create alternates between replicas when they are equally busy")
+    public void create_AlternatesReplicas_WhenEquallyBusy() {
+        StepVerifier.create(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create()))
+                .expectNext(replica0Connection)
+                .verifyComplete();
+        StepVerifier.create(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create()))
+                .expectNext(replica1Connection)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, routed("replica-0", "read"));
+        Assertions.assertEquals(1, routed("replica-1", "read"));
+    }
+
+    @Test
+    @DisplayName("create picks the replica with the fewest connections in use")
+    public void create_ReturnsLeastBusyReplica_WhenLoadDiffers() {
+        connectionsInUse.put("replica-0", 5);
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create()))
+                    .expectNext(replica1Connection)
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    @DisplayName("create keeps reads on the primary after a write in the same scope")
+    public void create_ReturnsPrimary_WhenReadFollowsWriteInScope() {
+        Mono<Connection> writeThenRead = routingConnectionFactory.create()
+                .then(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create()))
+                .subscriberContext(ReplicaRoutingConnectionFactory::trackWrites);
+
+        StepVerifier.create(writeThenRead)
+                .expectNext(primaryConnection)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, routed("primary", "read_your_writes"));
+    }
+
+    @Test
+    @DisplayName("create falls back to the primary when the replica cannot hand out a connection")
+    public void create_FallsBackToPrimary_WhenReplicaFails() {
+        BDDMockito.doReturn(Mono.error(new IllegalStateException("Timeout"))).when(replica0).create();
+
+        StepVerifier.create(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create()))
+                .expectNext(primaryConnection)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, routed("primary", "replica_unavailable"));
+    }
+
+    @Test
+    @DisplayName("create keeps pinned reads on the replica the first of them was routed to")
+    public void create_ReturnsSameReplica_WhenReadsArePinned() {
+        Context pinned = ReplicaRoutingConnectionFactory.pinned();
+        StepVerifier.create(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create())
+                .subscriberContext(pinned))
+                .expectNext(replica0Connection)
+                .verifyComplete();
+
+        connectionsInUse.put("replica-0", 5);
+        StepVerifier.create(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create())
+                .subscriberContext(pinned))
+                .expectNext(replica0Connection)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("create keeps pinned reads on the primary once a replica failed")
+    public void create_ReturnsPrimary_WhenPinnedReplicaFailed() {
+        BDDMockito.doReturn(Mono.error(new IllegalStateException("Timeout"))).when(replica0).create();
+        Context pinned = ReplicaRoutingConnectionFactory.pinned();
+        StepVerifier.create(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create())
+                .subscriberContext(pinned))
+                .expectNext(primaryConnection)
+                .verifyComplete();
+
+        StepVerifier.create(ReplicaRoutingConnectionFactory.readOnly(routingConnectionFactory.create())
+                .subscriberContext(pinned))
+                .expectNext(primaryConnection)
+                .verifyComplete();
+
+        BDDMockito.verify(replica1, BDDMockito.never()).create();
+    }
+
+    private double routed(String target, String reason) {
+        return meterRegistry.get("r2dbc.routing")
+                .tag("target", target)
+                .tag("reason", reason)
+                .counter().count();
+    }
+}
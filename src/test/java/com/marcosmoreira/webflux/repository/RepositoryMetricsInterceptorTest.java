@@ -0,0 +1,81 @@
+package com.marcosmoreira.webflux.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+class RepositoryMetricsInterceptorTest {
+
+    private RepositoryMetricsInterceptor interceptor;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private MethodInvocation invocation;
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() throws Throwable {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new RepositoryMetricsInterceptor(AnimeRepository.class, meterRegistry);
+
+        BDDMockito.when(invocation.getMethod())
+                .thenReturn(AnimeRepository.class.getMethod("findById", int.class));
+    }
+
+    @Test
+    @DisplayName("invoke records a success when the returned mono completes")
+    public void invoke_RecordsSuccess_WhenMonoCompletes() throws Throwable {
+        BDDMockito.when(invocation.proceed()).thenReturn(Mono.just(1));
+
+        @SuppressWarnings("unchecked")
+        Mono<Integer> result = (Mono<Integer>) interceptor.invoke(invocation);
+        Assertions.assertEquals(0, count("SUCCESS"));
+
+        StepVerifier.create(result)
+                .expectSubscription()
+                .expectNext(1)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, count("SUCCESS"));
+    }
+
+    @Test
+    @DisplayName("invoke records an error when the returned flux fails")
+    public void invoke_RecordsError_WhenFluxFails() throws Throwable {
+        BDDMockito.when(invocation.proceed()).thenReturn(Flux.error(new IllegalStateException()));
+
+        StepVerifier.create((Flux<?>) interceptor.invoke(invocation))
+                .expectSubscription()
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        Assertions.assertEquals(1, count("ERROR"));
+        Assertions.assertEquals(0, count("SUCCESS"));
+    }
+
+    private long count(String state) {
+        return meterRegistry.get(RepositoryMetricsInterceptor.METRIC_NAME)
+                .tag("repository", "AnimeRepository")
+                .tag("method", "findById")
+                .tag("state", state)
+                .timer().count();
+    }
+}
@@ -0,0 +1,191 @@
+package com.marcosmoreira.webflux.repository;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.blockhound.BlockHound;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(SpringExtension.class)
+class RepositoryResilienceInterceptorTest {
+
+    private final AnimeProperties.Resilience properties = new AnimeProperties().getResilience();
+
+    private final Map<String, Bulkhead> bulkheads = Map.of(
+            "read", bulkhead("read"), "write", bulkhead("write"), "auth", bulkhead("auth"));
+
+    private CircuitBreaker circuitBreaker;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private MethodInvocation invocation;
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() throws Throwable {
+        circuitBreaker = CircuitBreaker.ofDefaults("database");
+        meterRegistry = new SimpleMeterRegistry();
+
+        BDDMockito.when(invocation.getMethod())
+                .thenReturn(AnimeRepository.class.getMethod("findById", int.class));
+    }
+
+    @Test
+    @DisplayName("invoke passes the result through when the database answers in time")
+    public void invoke_ReturnsResult_WhenCallSucceeds() throws Throwable {
+        BDDMockito.when(invocation.proceed()).thenReturn(Flux.just(1, 2));
+
+        @SuppressWarnings("unchecked")
+        Flux<Integer> result = (Flux<Integer>) interceptor(AnimeRepository.class).invoke(invocation);
+
+        StepVerifier.create(result)
+                .expectNext(1, 2)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+        Assertions.assertEquals(1, bulkheads.get("read").getMetrics().getAvailableConcurrentCalls());
+    }
+
+    @Test
+    @DisplayName("invoke fails with gateway timeout when the call exceeds its configured timeout")
+    public void invoke_ReturnsGatewayTimeout_WhenCallIsTooSlow() throws Throwable {
+        properties.getTimeouts().put("AnimeRepository.findById", Duration.ofMillis(50));
+        BDDMockito.when(invocation.proceed()).thenReturn(Mono.never());
+
+        StepVerifier.create((Mono<?>) interceptor(AnimeRepository.class).invoke(invocation))
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.GATEWAY_TIMEOUT))
+                .verify(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(1, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+        Assertions.assertEquals(1, rejected("read", "timeout"));
+    }
+
+    @Test
+    @DisplayName("invoke keeps streaming when the subscriber pauses for longer than the timeout")
+    public void invoke_CompletesStream_WhenSubscriberIsSlow() throws Throwable {
+        properties.getTimeouts().put("AnimeRepository.findById", Duration.ofMillis(50));
+        BDDMockito.when(invocation.proceed()).thenReturn(Flux.just(1, 2, 3));
+
+        @SuppressWarnings("unchecked")
+        Flux<Integer> result = (Flux<Integer>) interceptor(AnimeRepository.class).invoke(invocation);
+
+        StepVerifier.create(result, 1)
+                .expectNext(1)
+                .thenAwait(Duration.ofMillis(200))
+                .thenRequest(2)
+                .expectNext(2, 3)
+                .verifyComplete();
+        Assertions.assertEquals(0, rejected("read", "timeout"));
+    }
+
+    @Test
+    @DisplayName("invoke fails with gateway timeout when a stream does not produce its first row in time")
+    public void invoke_ReturnsGatewayTimeout_WhenFirstRowIsTooSlow() throws Throwable {
+        properties.getTimeouts().put("AnimeRepository.findById", Duration.ofMillis(50));
+        BDDMockito.when(invocation.proceed()).thenReturn(Flux.never());
+
+        StepVerifier.create((Flux<?>) interceptor(AnimeRepository.class).invoke(invocation))
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.GATEWAY_TIMEOUT))
+                .verify(Duration.ofSeconds(5));
+        Assertions.assertEquals(1, rejected("read", "timeout"));
+    }
+
+    @Test
+    @DisplayName("invoke fails fast with service unavailable when the category bulkhead is full")
+    public void invoke_ReturnsServiceUnavailable_WhenBulkheadIsFull() throws Throwable {
+        BDDMockito.when(invocation.proceed()).thenReturn(Mono.never(), Mono.just(1));
+        RepositoryResilienceInterceptor interceptor = interceptor(AnimeRepository.class);
+
+        Disposable inFlight = ((Mono<?>) interceptor.invoke(invocation)).subscribe();
+        StepVerifier.create((Mono<?>) interceptor.invoke(invocation))
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.SERVICE_UNAVAILABLE))
+                .verify();
+        Assertions.assertEquals(1, rejected("read", "bulkhead"));
+        Assertions.assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+
+        inFlight.dispose();
+        Assertions.assertEquals(1, bulkheads.get("read").getMetrics().getAvailableConcurrentCalls());
+    }
+
+    @Test
+    @DisplayName("invoke fails fast with service unavailable without calling the database when the circuit is open")
+    public void invoke_ReturnsServiceUnavailable_WhenCircuitIsOpen() throws Throwable {
+        circuitBreaker.transitionToOpenState();
+        BDDMockito.when(invocation.proceed()).thenReturn(Mono.error(new IllegalStateException("not subscribed")));
+
+        StepVerifier.create((Mono<?>) interceptor(AnimeRepository.class).invoke(invocation))
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.SERVICE_UNAVAILABLE))
+                .verify();
+
+        Assertions.assertEquals(1, rejected("read", "circuit_open"));
+    }
+
+    @Test
+    @DisplayName("invoke uses the write bulkhead for writes and the auth bulkhead for user lookups")
+    public void invoke_UsesCategoryBulkhead_WhenMethodIsWriteOrAuth() throws Throwable {
+        BDDMockito.when(invocation.getMethod())
+                .thenReturn(AnimeRepository.class.getMethod("deleteByIds", List.class));
+        BDDMockito.when(invocation.proceed()).thenReturn(Mono.never());
+        Disposable write = ((Mono<?>) interceptor(AnimeRepository.class).invoke(invocation)).subscribe();
+
+        BDDMockito.when(invocation.getMethod())
+                .thenReturn(DevDojoUserRepository.class.getMethod("findByUsername", String.class));
+        Disposable auth = ((Mono<?>) interceptor(DevDojoUserRepository.class).invoke(invocation)).subscribe();
+
+        Assertions.assertEquals(1, bulkheads.get("read").getMetrics().getAvailableConcurrentCalls());
+        Assertions.assertEquals(0, bulkheads.get("write").getMetrics().getAvailableConcurrentCalls());
+        Assertions.assertEquals(0, bulkheads.get("auth").getMetrics().getAvailableConcurrentCalls());
+
+        write.dispose();
+        auth.dispose();
+    }
+
+    private RepositoryResilienceInterceptor interceptor(Class<?> repository) {
+        return new RepositoryResilienceInterceptor(repository, repository == DevDojoUserRepository.class,
+                properties, circuitBreaker, bulkheads, meterRegistry);
+    }
+
+    private double rejected(String category, String reason) {
+        return meterRegistry.get(RepositoryResilienceInterceptor.REJECTED_METRIC_NAME)
+                .tag("category", category)
+                .tag("reason", reason)
+                .counter().count();
+    }
+
+    private static Bulkhead bulkhead(String category) {
+        return Bulkhead.of(category, BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+    }
+
+    private static boolean hasStatus(Throwable error, HttpStatus status) {
+        return error instanceof ResponseStatusException && ((ResponseStatusException) error).getStatus() == status;
+    }
+}
@@ -0,0 +1,117 @@
+package com.marcosmoreira.webflux.security;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.DevDojoUserDomain;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import static org.mockito.ArgumentMatchers.anyString;
+
+@ExtendWith(SpringExtension.class)
+class CachingReactiveAuthenticationManagerTest {
+
+    private CachingReactiveAuthenticationManager authenticationManager;
+
+    @Mock
+    private ReactiveUserDetailsService userDetailsService;
+
+    @Spy
+    private PasswordEncoder passwordEncoder = PasswordEncoderFactories.createDelegatingPasswordEncoder();
+
+    private DevDojoUserDomain user;
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() {
+        user = new DevDojoUserDomain(1, "Marcos", "marcos", passwordEncoder.encode("devdojo"), "ROLE_USER");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        authenticationManager = new CachingReactiveAuthenticationManager(userDetailsService, passwordEncoder,
+                new VerifiedCredentialCache(new AnimeProperties(), meterRegistry), Schedulers.boundedElastic(),
+                meterRegistry);
+
+        BDDMockito.when(userDetailsService.findByUsername("marcos"))
+                .thenReturn(Mono.just(user));
+
+        BDDMockito.when(userDetailsService.findByUsername("unknown"))
+                .thenReturn(Mono.empty());
+    }
+
+    @Test
+    @DisplayName("authenticate verifies the password once and then accepts it from the cache")
+    public void authenticate_VerifiesPasswordOnce_WhenCalledTwice() {
+        UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken("marcos", "devdojo");
+
+        StepVerifier.create(authenticationManager.authenticate(token).then(authenticationManager.authenticate(token)))
+                .expectSubscription()
+                .expectNextMatches(authentication -> authentication.isAuthenticated()
+                        && authentication.getPrincipal() == user)
+                .verifyComplete();
+
+        BDDMockito.verify(passwordEncoder, BDDMockito.times(1)).matches("devdojo", user.getPassword());
+    }
+
+    @Test
+    @DisplayName("authenticate returns Mono error when the password is wrong, even after a successful login")
+    public void authenticate_ReturnMonoError_WhenPasswordIsWrong() {
+        StepVerifier.create(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("marcos", "devdojo"))
+                        .then(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("marcos", "wrong"))))
+                .expectSubscription()
+                .expectError(BadCredentialsException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("authenticate returns Mono error when the user does not exist")
+    public void authenticate_ReturnMonoError_WhenUserDoesNotExist() {
+        StepVerifier.create(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("unknown", "devdojo")))
+                .expectSubscription()
+                .expectError(BadCredentialsException.class)
+                .verify();
+
+        BDDMockito.verify(passwordEncoder, BDDMockito.never()).matches(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("authenticate returns service unavailable and counts it when the password scheduler rejects the check")
+    public void authenticate_ReturnServiceUnavailable_WhenPasswordSchedulerIsFull() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Scheduler fullScheduler = Schedulers.newSingle("full-password-verification");
+        fullScheduler.dispose();
+        CachingReactiveAuthenticationManager rejecting = new CachingReactiveAuthenticationManager(userDetailsService,
+                passwordEncoder, new VerifiedCredentialCache(new AnimeProperties(), meterRegistry), fullScheduler,
+                meterRegistry);
+
+        StepVerifier.create(rejecting.authenticate(new UsernamePasswordAuthenticationToken("marcos", "devdojo")))
+                .expectSubscription()
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify();
+
+        Assertions.assertEquals(1.0, meterRegistry.get("security.password.verification.rejected").counter().count());
+    }
+}
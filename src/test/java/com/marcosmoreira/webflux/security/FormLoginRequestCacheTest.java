@@ -0,0 +1,62 @@
+package com.marcosmoreira.webflux.security;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.mock.web.server.MockWebSession;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class FormLoginRequestCacheTest {
+
+    private final FormLoginRequestCache requestCache = new FormLoginRequestCache();
+
+    private final MockWebSession session = new MockWebSession();
+
+    private final AtomicInteger sessionLookups = new AtomicInteger();
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @Test
+    @DisplayName("removeMatchingRequest returns empty without looking up a session when there is no session cookie")
+    public void removeMatchingRequest_ReturnsEmpty_WhenRequestHasNoSessionCookie() {
+        StepVerifier.create(requestCache.removeMatchingRequest(exchange(MockServerHttpRequest.get("/animes"))))
+                .verifyComplete();
+
+        Assertions.assertEquals(0, sessionLookups.get());
+    }
+
+    @Test
+    @DisplayName("getRedirectUri returns the request saved before login when the request has the session cookie")
+    public void getRedirectUri_ReturnsSavedRequest_WhenRequestHasSessionCookie() {
+        StepVerifier.create(requestCache.saveRequest(exchange(MockServerHttpRequest.get("/animes")
+                        .accept(MediaType.TEXT_HTML))))
+                .verifyComplete();
+
+        StepVerifier.create(requestCache.getRedirectUri(exchange(MockServerHttpRequest.get("/")
+                        .cookie(new HttpCookie("SESSION", session.getId())))))
+                .expectNext(URI.create("/animes"))
+                .verifyComplete();
+    }
+
+    private MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        return MockServerWebExchange.builder(request.build())
+                .sessionManager(exchange -> Mono.fromSupplier(() -> {
+                    sessionLookups.incrementAndGet();
+                    return session;
+                }))
+                .build();
+    }
+}
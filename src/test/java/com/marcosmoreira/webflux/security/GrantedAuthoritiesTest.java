@@ -0,0 +1,62 @@
+package com.marcosmoreira.webflux.security;
+
+import com.marcosmoreira.webflux.domain.DevDojoUserDomain;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Set;
+
+class GrantedAuthoritiesTest {
+
+    @Test
+    @DisplayName("getAuthorities parses the authorities once and shares them between users with the same roles")
+    public void getAuthorities_ReturnsSharedInstances_WhenRolesAreEqual() {
+        DevDojoUserDomain marcos = new DevDojoUserDomain(1, "Marcos", "marcos", "{noop}devdojo", "ROLE_USER,ROLE_ADMIN");
+        DevDojoUserDomain other = new DevDojoUserDomain(2, "Other", "other", "{noop}devdojo", "ROLE_USER,ROLE_ADMIN");
+
+        Assertions.assertSame(marcos.getAuthorities(), marcos.getAuthorities());
+        Assertions.assertSame(marcos.getAuthorities(), other.getAuthorities());
+        Assertions.assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), AuthorityUtils.authorityListToSet(marcos.getAuthorities()));
+        Assertions.assertSame(GrantedAuthorities.of("ROLE_USER"), marcos.getAuthorities().iterator().next());
+    }
+
+    @Test
+    @DisplayName("getAuthorities reflects authorities changed through the setter")
+    public void getAuthorities_ReturnsNewAuthorities_WhenAuthoritiesChange() {
+        DevDojoUserDomain marcos = new DevDojoUserDomain(1, "Marcos", "marcos", "{noop}devdojo", "ROLE_USER,ROLE_ADMIN");
+        marcos.getAuthorities();
+
+        marcos.setAuthorities("ROLE_USER");
+
+        Assertions.assertEquals(Set.of("ROLE_USER"), AuthorityUtils.authorityListToSet(marcos.getAuthorities()));
+    }
+
+    @Test
+    @DisplayName("hasRole grants access only to authenticated users holding the role")
+    public void hasRole_GrantsAccess_WhenUserHasRole() {
+        RoleAuthorizationManager admin = RoleAuthorizationManager.hasRole("ADMIN");
+        DevDojoUserDomain marcos = new DevDojoUserDomain(1, "Marcos", "marcos", "{noop}devdojo", "ROLE_USER,ROLE_ADMIN");
+        DevDojoUserDomain moreira = new DevDojoUserDomain(2, "Moreira", "moreira", "{noop}devdojo", "ROLE_USER");
+
+        StepVerifier.create(admin.check(Mono.just(authenticated(marcos)), null))
+                .expectNextMatches(decision -> decision.isGranted())
+                .verifyComplete();
+
+        StepVerifier.create(admin.check(Mono.just(authenticated(moreira)), null))
+                .expectNextMatches(decision -> !decision.isGranted())
+                .verifyComplete();
+
+        StepVerifier.create(admin.check(Mono.empty(), null))
+                .expectNextMatches(decision -> !decision.isGranted())
+                .verifyComplete();
+    }
+
+    private static UsernamePasswordAuthenticationToken authenticated(DevDojoUserDomain user) {
+        return new UsernamePasswordAuthenticationToken(user, user.getPassword(), user.getAuthorities());
+    }
+}
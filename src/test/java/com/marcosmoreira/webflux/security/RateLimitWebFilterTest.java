@@ -0,0 +1,165 @@
+package com.marcosmoreira.webflux.security;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.WebFilterChain;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class RateLimitWebFilterTest {
+
+    private final AnimeProperties.RateLimit properties = new AnimeProperties().getRateLimit();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final WebFilterChain chain = exchange -> Mono.empty();
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @Test
+    @DisplayName("filter lets a burst through and then rejects with too many requests and Retry-After")
+    public void filter_ReturnsTooManyRequests_WhenBurstIsExhausted() {
+        RateLimitWebFilter filter = filter();
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(filter(filter, "/animes", "marcos")).verifyComplete();
+        }
+
+        MockServerWebExchange rejected = exchange("/animes");
+        StepVerifier.create(filter(filter, rejected, "marcos", chain))
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.TOO_MANY_REQUESTS))
+                .verify();
+        Assertions.assertEquals("1", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        StepVerifier.create(filter(filter, "/animes", "marcos")).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("filter keeps separate buckets per user and per route")
+    public void filter_KeepsBucketsApart_WhenUserOrRouteDiffers() {
+        RateLimitWebFilter filter = filter();
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(filter(filter, "/animes", "marcos")).verifyComplete();
+        }
+
+        StepVerifier.create(filter(filter, "/animes", "moreira")).verifyComplete();
+        StepVerifier.create(filter(filter, "/animes/1", "marcos")).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("filter treats every numeric id as the same route")
+    public void filter_SharesBucket_WhenOnlyIdDiffers() {
+        properties.getDefaultLimit().setBurst(2);
+        RateLimitWebFilter filter = filter();
+
+        StepVerifier.create(filter(filter, "/animes/1", "marcos")).verifyComplete();
+        StepVerifier.create(filter(filter, "/animes/2", "marcos")).verifyComplete();
+        StepVerifier.create(filter(filter, "/animes/3", "marcos"))
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.TOO_MANY_REQUESTS))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("filter charges every path without a configured limit to the caller's one default bucket")
+    public void filter_SharesDefaultBucket_WhenPathHasNoConfiguredLimit() {
+        properties.getDefaultLimit().setBurst(2);
+        RateLimitWebFilter filter = filter();
+
+        StepVerifier.create(filter(filter, "/random-1", "marcos")).verifyComplete();
+        StepVerifier.create(filter(filter, "/random-2", "marcos")).verifyComplete();
+        StepVerifier.create(filter(filter, "/random-3", "marcos"))
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.TOO_MANY_REQUESTS))
+                .verify();
+        StepVerifier.create(filter(filter, "/animes", "marcos")).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("filter does not charge a request answered with not modified")
+    public void filter_RefundsToken_WhenResponseIsNotModified() {
+        RateLimitWebFilter filter = filter();
+        WebFilterChain notModified = exchange -> {
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_MODIFIED);
+            return Mono.empty();
+        };
+
+        for (int i = 0; i < 20; i++) {
+            StepVerifier.create(filter(filter, exchange("/animes"), "marcos", notModified)).verifyComplete();
+        }
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(filter(filter, "/animes", "marcos")).verifyComplete();
+        }
+        StepVerifier.create(filter(filter, "/animes", "marcos"))
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.TOO_MANY_REQUESTS))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("filter returns service unavailable when too many requests are in flight and recovers when they finish")
+    public void filter_ReturnsServiceUnavailable_WhenInFlightCapIsReached() {
+        properties.setMaxInFlight(1);
+        RateLimitWebFilter filter = filter();
+        MonoProcessor<Void> running = MonoProcessor.create();
+
+        StepVerifier.create(filter(filter, exchange("/animes/1"), "marcos", exchange -> running))
+                .then(() -> StepVerifier.create(filter(filter, "/animes/2", "moreira"))
+                        .expectErrorMatches(error -> hasStatus(error, HttpStatus.SERVICE_UNAVAILABLE))
+                        .verify())
+                .then(running::onComplete)
+                .verifyComplete();
+
+        StepVerifier.create(filter(filter, "/animes/2", "moreira")).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("filter does not limit actuator endpoints")
+    public void filter_SkipsActuator() {
+        properties.setMaxInFlight(0);
+        RateLimitWebFilter filter = filter();
+
+        StepVerifier.create(filter(filter, "/actuator/health", "marcos")).verifyComplete();
+    }
+
+    private RateLimitWebFilter filter() {
+        return new RateLimitWebFilter(properties, new SimpleMeterRegistry(), clock::get);
+    }
+
+    private Mono<Void> filter(RateLimitWebFilter filter, String path, String username) {
+        return filter(filter, exchange(path), username, chain);
+    }
+
+    private static Mono<Void> filter(RateLimitWebFilter filter, MockServerWebExchange exchange, String username,
+                                     WebFilterChain chain) {
+        TestingAuthenticationToken authentication = new TestingAuthenticationToken(username, "devdojo", "ROLE_USER");
+        return filter.filter(exchange, chain)
+                .subscriberContext(ReactiveSecurityContextHolder.withAuthentication(authentication));
+    }
+
+    private static MockServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    private static boolean hasStatus(Throwable error, HttpStatus status) {
+        return error instanceof ResponseStatusException && ((ResponseStatusException) error).getStatus() == status;
+    }
+}
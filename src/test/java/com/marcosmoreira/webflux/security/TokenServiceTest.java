@@ -0,0 +1,64 @@
+package com.marcosmoreira.webflux.security;
+
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.TokenResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+
+class TokenServiceTest {
+
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken("marcos", null,
+            AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+
+    @Test
+    @DisplayName("verify returns the username and authorities of a token issued by the same secret")
+    public void verify_ReturnsAuthentication_WhenTokenIsValid() {
+        AnimeProperties animeProperties = propertiesWithSecret(Duration.ofMinutes(5));
+        TokenResponse tokenResponse = new TokenService(animeProperties).issue(authentication);
+
+        Authentication verified = new TokenService(animeProperties).verify(tokenResponse.getAccessToken())
+                .orElseThrow();
+
+        Assertions.assertEquals("marcos", verified.getName());
+        Assertions.assertTrue(verified.isAuthenticated());
+        Assertions.assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"),
+                AuthorityUtils.authorityListToSet(verified.getAuthorities()));
+    }
+
+    @Test
+    @DisplayName("verify rejects a token whose payload was changed")
+    public void verify_ReturnsEmpty_WhenTokenWasTampered() {
+        TokenService tokenService = new TokenService(propertiesWithSecret(Duration.ofMinutes(5)));
+        String token = tokenService.issue(authentication).getAccessToken();
+        String otherUser = tokenService.issue(new UsernamePasswordAuthenticationToken("moreira", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER"))).getAccessToken();
+
+        String tampered = token.substring(0, token.indexOf('.')) + otherUser.substring(otherUser.indexOf('.'));
+
+        Assertions.assertTrue(tokenService.verify(tampered).isEmpty());
+        Assertions.assertTrue(tokenService.verify("not-a-token").isEmpty());
+    }
+
+    @Test
+    @DisplayName("verify rejects an expired token")
+    public void verify_ReturnsEmpty_WhenTokenExpired() {
+        TokenService tokenService = new TokenService(propertiesWithSecret(Duration.ofSeconds(-1)));
+
+        Assertions.assertTrue(tokenService.verify(tokenService.issue(authentication).getAccessToken()).isEmpty());
+    }
+
+    private static AnimeProperties propertiesWithSecret(Duration timeToLive) {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getSecurity().getToken().setSecret(Base64.getEncoder().encodeToString(new byte[32]));
+        animeProperties.getSecurity().getToken().setTimeToLive(timeToLive);
+        return animeProperties;
+    }
+}
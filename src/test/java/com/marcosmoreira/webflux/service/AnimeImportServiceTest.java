@@ -0,0 +1,108 @@
+package com.marcosmoreira.webflux.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcosmoreira.webflux.cache.AnimeNameIndex;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.AnimeImportReject;
+import com.marcosmoreira.webflux.repository.AnimeRepository;
+import com.marcosmoreira.webflux.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+
+@ExtendWith(SpringExtension.class)
+class AnimeImportServiceTest {
+
+    @InjectMocks
+    private AnimeImportService animeImportService;
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    @Spy
+    private AnimeProperties animeProperties = new AnimeProperties();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private AnimeNameIndex animeNameIndex = new AnimeNameIndex(new SimpleMeterRegistry());
+
+    private final AnimeDomain animeDomain = AnimeCreator.createValidAnime();
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() {
+        BDDMockito.when(animeRepository.insertAll(anyList(), anyInt()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<List<AnimeDomain>>getArgument(0))
+                        .map(anime -> anime.withId(animeDomain.getId())));
+    }
+
+    @Test
+    @DisplayName("importNdjson imports valid lines split across buffers and reports the rejected ones")
+    public void importNdjson_ImportsValidLinesAndReportsRejects_WhenSuccessful() {
+        Flux<DataBuffer> body = buffers("{\"name\":\"Nome de ", "um anime\"}\n{\"name\":\"\"}\n",
+                "not json\n\n{\"name\":\"Outro anime\"}");
+
+        StepVerifier.create(animeImportService.importNdjson(body))
+                .expectSubscription()
+                .assertNext(result -> {
+                    Assertions.assertEquals(2, result.getImported());
+                    Assertions.assertEquals(2, result.getRejected());
+                    Assertions.assertEquals(List.of(2L, 3L), result.getRejects().stream()
+                            .map(AnimeImportReject::getLine)
+                            .collect(Collectors.toList()));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("importCsv skips the header, unquotes names and writes them in chunks")
+    public void importCsv_ImportsNamesInChunks_WhenSuccessful() {
+        animeProperties.getBatch().setChunkSize(2);
+        Flux<DataBuffer> body = buffers("name\r\nNome de um anime\n\"Anime, com \"\"aspas\"\"\"\nTerceiro\n");
+
+        StepVerifier.create(animeImportService.importCsv(body))
+                .expectSubscription()
+                .assertNext(result -> {
+                    Assertions.assertEquals(3, result.getImported());
+                    Assertions.assertEquals(0, result.getRejected());
+                })
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository).insertAll(List.of(AnimeCreator.createAnimeToBeSaved(),
+                AnimeDomain.builder().name("Anime, com \"aspas\"").build()), 2);
+        BDDMockito.verify(animeRepository).insertAll(List.of(AnimeDomain.builder().name("Terceiro").build()), 2);
+    }
+
+    private static Flux<DataBuffer> buffers(String... chunks) {
+        return Flux.fromArray(chunks)
+                .map(chunk -> new DefaultDataBufferFactory().wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+    }
+}
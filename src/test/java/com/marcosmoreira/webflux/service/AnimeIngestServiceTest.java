@@ -0,0 +1,160 @@
+package com.marcosmoreira.webflux.service;
+
+import com.marcosmoreira.webflux.cache.AnimeNameIndex;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeDomain;
+import com.marcosmoreira.webflux.domain.AnimeIngestStatus;
+import com.marcosmoreira.webflux.repository.AnimeRepository;
+import com.marcosmoreira.webflux.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+
+@ExtendWith(SpringExtension.class)
+class AnimeIngestServiceTest {
+
+    private AnimeIngestService animeIngestService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final AnimeProperties animeProperties = new AnimeProperties();
+
+    private final AtomicInteger ids = new AtomicInteger();
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() {
+        //the ticker stays out of the way, flushes are triggered by full batches and stop()
+        animeProperties.getIngest().setBatchSize(2);
+        animeProperties.getIngest().setCapacity(3);
+        animeProperties.getIngest().setFlushInterval(Duration.ofHours(1));
+        meterRegistry = new SimpleMeterRegistry();
+        animeIngestService = new AnimeIngestService(animeRepository, new AnimeNameIndex(meterRegistry),
+                animeProperties, meterRegistry);
+
+        BDDMockito.when(animeRepository.insertAll(anyList(), anyInt()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<List<AnimeDomain>>getArgument(0))
+                        .map(anime -> anime.withId(ids.incrementAndGet())));
+
+        animeIngestService.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        animeIngestService.stop();
+    }
+
+    @Test
+    @DisplayName("ingest queues the anime and stores it once a batch is full")
+    public void ingest_StoresBatch_WhenBatchIsFull() {
+        AnimeIngestStatus first = animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()).block();
+        Assertions.assertEquals(AnimeIngestStatus.State.QUEUED, first.getState());
+        StepVerifier.create(animeIngestService.status(first.getTrackingId()))
+                .expectNext(first)
+                .verifyComplete();
+
+        AnimeIngestStatus second = animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()).block();
+
+        StepVerifier.create(animeIngestService.status(first.getTrackingId()))
+                .expectNext(new AnimeIngestStatus(first.getTrackingId(), AnimeIngestStatus.State.STORED, 1))
+                .verifyComplete();
+        StepVerifier.create(animeIngestService.status(second.getTrackingId()))
+                .expectNext(new AnimeIngestStatus(second.getTrackingId(), AnimeIngestStatus.State.STORED, 2))
+                .verifyComplete();
+        Assertions.assertEquals(2, meterRegistry.get("anime.ingest.lag").timer().count());
+    }
+
+    @Test
+    @DisplayName("ingest returns too many requests when the queue is at capacity")
+    public void ingest_ReturnsTooManyRequests_WhenQueueIsFull() {
+        animeProperties.getIngest().setBatchSize(10);
+        for (int i = 0; i < 3; i++) {
+            animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()).block();
+        }
+
+        StepVerifier.create(animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.TOO_MANY_REQUESTS)
+                .verify();
+        Assertions.assertEquals(1, rows("rejected"));
+    }
+
+    @Test
+    @DisplayName("ingest returns bad request when the anime has no name")
+    public void ingest_ReturnsBadRequest_WhenNameIsEmpty() {
+        StepVerifier.create(animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved().withName("")))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("stop stores what is still queued before signalling and refuses new animes")
+    public void stop_DrainsQueue_WhenAnimesArePending() {
+        AnimeIngestStatus queued = animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()).block();
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        animeIngestService.stop(() -> stopped.set(true));
+
+        Assertions.assertTrue(stopped.get());
+        Assertions.assertEquals(AnimeIngestStatus.State.STORED,
+                animeIngestService.status(queued.getTrackingId()).block().getState());
+        StepVerifier.create(animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("ingest marks the batch as failed when the insert fails")
+    public void ingest_MarksFailed_WhenInsertFails() {
+        BDDMockito.when(animeRepository.insertAll(anyList(), anyInt()))
+                .thenReturn(Flux.error(new IllegalStateException("database down")));
+
+        AnimeIngestStatus first = animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()).block();
+        animeIngestService.ingest(AnimeCreator.createAnimeToBeSaved()).block();
+
+        Assertions.assertEquals(AnimeIngestStatus.State.FAILED,
+                animeIngestService.status(first.getTrackingId()).block().getState());
+        Assertions.assertEquals(2, rows("failed"));
+    }
+
+    @Test
+    @DisplayName("status returns not found when the tracking id is unknown")
+    public void status_ReturnsNotFound_WhenTrackingIdIsUnknown() {
+        StepVerifier.create(animeIngestService.status("unknown"))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    private double rows(String outcome) {
+        return meterRegistry.get("anime.ingest.animes").tag("outcome", outcome).counter().count();
+    }
+}
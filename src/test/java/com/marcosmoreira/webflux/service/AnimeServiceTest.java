@@ -1,8 +1,13 @@
 package com.marcosmoreira.webflux.service;
 
+import com.marcosmoreira.webflux.cache.AnimeCache;
+import com.marcosmoreira.webflux.cache.AnimeNameIndex;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.AnimeBatchResult;
 import com.marcosmoreira.webflux.domain.AnimeDomain;
 import com.marcosmoreira.webflux.repository.AnimeRepository;
 import com.marcosmoreira.webflux.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,7 +17,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.BDDMockito;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.AbstractReactiveTransactionManager;
+import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
@@ -21,13 +33,18 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyList;
 
 @ExtendWith(SpringExtension.class)
 class AnimeServiceTest {
@@ -38,6 +55,15 @@ class AnimeServiceTest {
     @Mock
     private AnimeRepository animeRepository;
 
+    @Spy
+    private AnimeProperties animeProperties = new AnimeProperties();
+
+    @Spy
+    private AnimeCache animeCache = new AnimeCache(animeProperties, new SimpleMeterRegistry());
+
+    @Spy
+    private AnimeNameIndex animeNameIndex = new AnimeNameIndex(new SimpleMeterRegistry());
+
     private final AnimeDomain animeDomain = AnimeCreator.createValidAnime();
 
     @BeforeAll
@@ -56,14 +82,14 @@ class AnimeServiceTest {
         BDDMockito.when(animeRepository.save(AnimeCreator.createAnimeToBeSaved()))
                 .thenReturn(Mono.just(animeDomain));
 
-        BDDMockito.when(animeRepository.delete(any(AnimeDomain.class)))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.deleteIfMatches(anyInt(), any()))
+                .thenReturn(Mono.just(1));
 
-        BDDMockito.when(animeRepository.save(AnimeCreator.createValidUpdatedAnime()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.updateIfMatches(anyInt(), anyString(), any()))
+                .thenReturn(Mono.just(AnimeCreator.createValidUpdatedAnime().withVersion(1L)));
 
-        BDDMockito.when(animeRepository.saveAll(List.of(AnimeCreator.createAnimeToBeSaved(),
-               AnimeCreator.createAnimeToBeSaved())))
+        BDDMockito.when(animeRepository.insertAll(List.of(AnimeCreator.createAnimeToBeSaved(),
+               AnimeCreator.createAnimeToBeSaved()), 500))
                 .thenReturn(Flux.just(animeDomain, animeDomain));
     }
 
@@ -92,6 +118,139 @@ class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("streamAll returns a flux of anime read with the configured fetch size")
+    public void streamAll_ReturnFluxOfAnime_WhenSuccessful() {
+        BDDMockito.when(animeRepository.streamAll(animeProperties.getStream().getFetchSize()))
+                .thenReturn(Flux.just(animeDomain));
+
+        StepVerifier.create(animeService.streamAll())
+                .expectSubscription()
+                .expectNext(animeDomain)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage returns the first page and a cursor when there are more anime")
+    public void findPage_ReturnsPageWithCursor_WhenThereAreMoreAnime() {
+        BDDMockito.when(animeRepository.findPageAfter(0, 2))
+                .thenReturn(Flux.just(animeDomain, animeDomain.withId(2)));
+
+        StepVerifier.create(animeService.findPage(null, 1))
+                .expectSubscription()
+                .assertNext(page -> {
+                    Assertions.assertEquals(List.of(animeDomain), page.getContent());
+                    Assertions.assertNotNull(page.getNextCursor());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage continues after the id encoded in the cursor and returns no cursor on the last page")
+    public void findPage_ReturnsLastPageWithoutCursor_WhenCursorIsGiven() {
+        BDDMockito.when(animeRepository.findPageAfter(0, 2))
+                .thenReturn(Flux.just(animeDomain, animeDomain.withId(2)));
+        BDDMockito.when(animeRepository.findPageAfter(1, 2))
+                .thenReturn(Flux.just(animeDomain.withId(2)));
+
+        String cursor = animeService.findPage(null, 1).block().getNextCursor();
+
+        StepVerifier.create(animeService.findPage(cursor, 1))
+                .expectSubscription()
+                .assertNext(page -> {
+                    Assertions.assertEquals(List.of(animeDomain.withId(2)), page.getContent());
+                    Assertions.assertNull(page.getNextCursor());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage returns Mono error when the cursor is invalid")
+    public void findPage_ReturnMonoError_WhenCursorIsInvalid() {
+        StepVerifier.create(animeService.findPage("not-a-cursor", 10))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("search lists prefix matches first and fills the default limit with substring matches")
+    public void search_ReturnFluxOfAnime_WhenSuccessful() {
+        AnimeDomain naruto = AnimeDomain.builder().id(1).name("Naruto").build();
+        AnimeDomain shippuden = AnimeDomain.builder().id(2).name("Naruto Shippuden").build();
+        AnimeDomain boruto = AnimeDomain.builder().id(3).name("Boruto: Naruto Next Generations").build();
+        BDDMockito.when(animeRepository.searchByPrefix("naru%", 20))
+                .thenReturn(Flux.just(naruto, shippuden));
+        BDDMockito.when(animeRepository.searchBySubstring("%naru%", "naru%", 18))
+                .thenReturn(Flux.just(boruto));
+
+        StepVerifier.create(animeService.search(" naru ", null))
+                .expectSubscription()
+                .expectNext(naruto, shippuden, boruto)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search does not run the substring query when prefix matches fill the limit")
+    public void search_SkipsSubstringQuery_WhenPrefixMatchesFillLimit() {
+        BDDMockito.when(animeRepository.searchByPrefix("naru%", 1))
+                .thenReturn(Flux.just(animeDomain));
+
+        StepVerifier.create(animeService.search("naru", 1))
+                .expectSubscription()
+                .expectNext(animeDomain)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).searchBySubstring(any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("search escapes LIKE wildcards typed by the user and caps the limit")
+    public void search_EscapesWildcards_WhenTermContainsThem() {
+        BDDMockito.when(animeRepository.searchByPrefix("100\\%\\_\\\\%", 100))
+                .thenReturn(Flux.just(animeDomain));
+        BDDMockito.when(animeRepository.searchBySubstring("%100\\%\\_\\\\%", "100\\%\\_\\\\%", 99))
+                .thenReturn(Flux.empty());
+
+        StepVerifier.create(animeService.search("100%_\\", 1_000))
+                .expectSubscription()
+                .expectNext(animeDomain)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search returns Flux error when the term is too short")
+    public void search_ReturnFluxError_WhenTermIsTooShort() {
+        StepVerifier.create(animeService.search("na", null))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).searchByPrefix(any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("suggest returns names from the index once it is loaded")
+    public void suggest_ReturnFluxOfAnime_WhenIndexIsLoaded() {
+        BDDMockito.doReturn(true).when(animeNameIndex).isLoaded();
+        animeNameIndex.put(animeDomain);
+
+        //the index only keeps id and name
+        StepVerifier.create(animeService.suggest("nome", null))
+                .expectSubscription()
+                .expectNext(animeDomain.withVersion(null))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("suggest returns Flux error while the index is loading")
+    public void suggest_ReturnFluxError_WhenIndexIsLoading() {
+        StepVerifier.create(animeService.suggest("nome", null))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
     @Test
     @DisplayName("findById returns Mono with anime when it exists")
     public void findById_ReturnMonoAnime_WhenSuccessful() {
@@ -101,6 +260,28 @@ class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("findById reads the repository once and then serves the anime from the cache")
+    public void findById_ServesAnimeFromCache_WhenCalledTwice() {
+        StepVerifier.create(animeService.findById(1).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(animeDomain)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.times(1)).findById(1);
+    }
+
+    @Test
+    @DisplayName("findById reads the repository again after the anime was deleted")
+    public void findById_ReadsRepository_WhenAnimeWasDeleted() {
+        StepVerifier.create(animeService.findById(1).then(animeService.delete(1, null)).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(animeDomain)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.times(2)).findById(1);
+    }
+
     @Test
     @DisplayName("findById returns Mono error when anime does not exist")
     public void findById_ReturnMonoError_WhenEmptyMonoIsReturned() {
@@ -135,61 +316,295 @@ class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("saveAll adds the names to the suggest index only once the transaction commits")
+    public void saveAll_IndexesNames_WhenTransactionCommits(){
+        AnimeDomain animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+        TransactionalOperator transaction = TransactionalOperator.create(new NoOpTransactionManager());
+
+        StepVerifier.create(transaction.transactional(animeService.saveAll(List.of(animeToBeSaved, animeToBeSaved)))
+                .doOnNext(saved -> BDDMockito.verify(animeNameIndex, BDDMockito.never()).put(any())))
+                .expectSubscription()
+                .expectNext(animeDomain, animeDomain)
+                .verifyComplete();
+
+        BDDMockito.verify(animeNameIndex, BDDMockito.times(2)).put(animeDomain);
+    }
+
+    @Test
+    @DisplayName("saveAll leaves the suggest index untouched when a later chunk fails and the transaction rolls back")
+    public void saveAll_DoesNotIndexNames_WhenTransactionRollsBack(){
+        BDDMockito.when(animeRepository.insertAll(anyList(), anyInt()))
+                .thenReturn(Flux.just(animeDomain).concatWith(Flux.error(new IllegalStateException("chunk 2"))));
+        TransactionalOperator transaction = TransactionalOperator.create(new NoOpTransactionManager());
+
+        StepVerifier.create(transaction.transactional(animeService.saveAll(List.of(AnimeCreator.createAnimeToBeSaved()))))
+                .expectSubscription()
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        BDDMockito.verify(animeNameIndex, BDDMockito.never()).put(any());
+    }
+
     @Test
     @DisplayName("saveAll returns Mono error when one of the objects in the list contains null or empty name")
     public void saveAll_ReturnsMonoError_WhenContainsInvalidName(){
         AnimeDomain animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
 
-        BDDMockito.when(animeRepository.saveAll(anyIterable()))
-                .thenReturn(Flux.just(animeDomain, animeDomain.withName("")));
-
         StepVerifier.create(animeService.saveAll(List.of(animeToBeSaved, animeToBeSaved.withName(""))))
                 .expectSubscription()
-                .expectNext(animeDomain)
                 .expectError(ResponseStatusException.class)
                 .verify();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).insertAll(anyList(), anyInt());
+    }
+
+    @Test
+    @DisplayName("saveAll returns Mono error when the batch is larger than the configured maximum")
+    public void saveAll_ReturnMonoError_WhenBatchIsTooLarge(){
+        List<AnimeDomain> animes = IntStream.rangeClosed(1, animeProperties.getBatch().getMaxSize() + 1)
+                .mapToObj(index -> AnimeCreator.createAnimeToBeSaved())
+                .collect(Collectors.toList());
+
+        StepVerifier.create(animeService.saveAll(animes))
+                .expectSubscription()
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.BAD_REQUEST))
+                .verify();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).insertAll(anyList(), anyInt());
     }
 
     @Test
     @DisplayName("delete removes then anime when successful")
     public void delete_RemovesAnime_WhenSuccessful(){
-        StepVerifier.create(animeService.delete(1))
+        StepVerifier.create(animeService.delete(1, null))
                 .expectSubscription()
                 .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).findById(anyInt());
     }
 
     @Test
     @DisplayName("delete returns Mono error when anime does not exist")
-    public void delete_ReturnMonoError_WhenEmptyMonoIsReturned(){
-        BDDMockito.when(animeRepository.findById(anyInt()))
-                .thenReturn(Mono.empty());
+    public void delete_ReturnMonoError_WhenNoRowIsDeleted(){
+        BDDMockito.when(animeRepository.deleteIfMatches(anyInt(), any()))
+                .thenReturn(Mono.just(0));
 
-        StepVerifier.create(animeService.delete(1))
+        StepVerifier.create(animeService.delete(1, null))
                 .expectSubscription()
-                .expectError(ResponseStatusException.class)
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.NOT_FOUND))
                 .verify();
     }
 
     @Test
-    @DisplayName("update returns Mono error when anime does exist")
-    public void update_ReturnMonoError_WhenEmptyMonoIsReturned(){
-        BDDMockito.when(animeRepository.findById(anyInt()))
+    @DisplayName("delete returns Mono error with precondition failed when the anime exists with another version")
+    public void delete_ReturnMonoErrorPreconditionFailed_WhenVersionChanged(){
+        BDDMockito.when(animeRepository.deleteIfMatches(1, 3L))
+                .thenReturn(Mono.just(0));
+        BDDMockito.when(animeRepository.existsById(1))
+                .thenReturn(Mono.just(true));
+
+        StepVerifier.create(animeService.delete(1, 3L))
+                .expectSubscription()
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.PRECONDITION_FAILED))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("update returns Mono error when anime does not exist")
+    public void update_ReturnMonoError_WhenNoRowIsUpdated(){
+        BDDMockito.when(animeRepository.updateIfMatches(anyInt(), anyString(), any()))
                 .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.existsById(1))
+                .thenReturn(Mono.just(false));
 
-        StepVerifier.create(animeService.update(AnimeCreator.createValidUpdatedAnime(), 1))
+        StepVerifier.create(animeService.update(AnimeCreator.createValidUpdatedAnime(), 1, 0L))
                 .expectSubscription()
-                .expectError(ResponseStatusException.class)
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.NOT_FOUND))
                 .verify();
     }
 
     @Test
-    @DisplayName("update save updated anime and returns empty mono when successful")
+    @DisplayName("update returns the updated anime with a single statement when successful")
     public void update_SaveUpdatedAnime_WhenSuccessful(){
-        BDDMockito.when(animeRepository.findById(anyInt()))
-                .thenReturn(Mono.just(AnimeCreator.createValidUpdatedAnime()));
+        StepVerifier.create(animeService.update(AnimeCreator.createValidUpdatedAnime(), 1, null))
+                .expectSubscription()
+                .expectNext(AnimeCreator.createValidUpdatedAnime().withVersion(1L))
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).findById(anyInt());
+    }
+
+    @Test
+    @DisplayName("update returns Mono error with precondition failed and evicts the cached anime when the version changed")
+    public void update_ReturnMonoErrorPreconditionFailed_WhenVersionChanged(){
+        BDDMockito.when(animeRepository.updateIfMatches(1, "Nome de um anime 2", 0L))
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.existsById(1))
+                .thenReturn(Mono.just(true));
+
+        StepVerifier.create(animeService.findById(1)
+                .then(animeService.update(AnimeCreator.createValidUpdatedAnime(), 1, 0L)))
+                .expectSubscription()
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.PRECONDITION_FAILED))
+                .verify();
+
+        StepVerifier.create(animeService.findById(1))
+                .expectNext(animeDomain)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, BDDMockito.times(2)).findById(1);
+    }
+
+    @Test
+    @DisplayName("patch writes only the members present in the patch")
+    public void patch_UpdatesOnlyPatchedColumns_WhenSuccessful(){
+        BDDMockito.when(animeRepository.patchIfMatches(1, Map.of("name", "Nome de um anime 2"), 0L))
+                .thenReturn(Mono.just(AnimeCreator.createValidUpdatedAnime().withVersion(1L)));
 
-        StepVerifier.create(animeService.update(AnimeCreator.createValidUpdatedAnime(), 1))
+        StepVerifier.create(animeService.patch(1, Map.of("name", "Nome de um anime 2"), 0L))
                 .expectSubscription()
+                .expectNext(AnimeCreator.createValidUpdatedAnime().withVersion(1L))
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("patch returns Mono error with bad request when a member is not patchable")
+    public void patch_ReturnMonoError_WhenMemberIsNotPatchable(){
+        StepVerifier.create(animeService.patch(1, Map.of("version", 7), null))
+                .expectSubscription()
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.BAD_REQUEST))
+                .verify();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).patchIfMatches(anyInt(), any(), any());
+    }
+
+    @Test
+    @DisplayName("patch returns Mono error with bad request when the name is removed or empty")
+    public void patch_ReturnMonoError_WhenNameIsInvalid(){
+        Map<String, Object> removeName = new HashMap<>();
+        removeName.put("name", null);
+
+        StepVerifier.create(animeService.patch(1, removeName, null))
+                .expectSubscription()
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.BAD_REQUEST))
+                .verify();
+
+        StepVerifier.create(animeService.patch(1, Map.of("name", ""), null))
+                .expectSubscription()
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.BAD_REQUEST))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("deleteAll deletes the whole batch in one statement and reports the ids that were not found")
+    public void deleteAll_ReturnsOutcomePerId_WhenSuccessful(){
+        BDDMockito.when(animeRepository.deleteByIds(List.of(1, 2, 3)))
+                .thenReturn(Flux.just(1, 3));
+
+        StepVerifier.create(animeService.deleteAll(List.of(1, 2, 3, 1)))
+                .expectSubscription()
+                .expectNext(new AnimeBatchResult(List.of(1, 3), List.of(2)))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("deleteAll returns Mono error when the batch is larger than the configured maximum")
+    public void deleteAll_ReturnMonoError_WhenBatchIsTooLarge(){
+        List<Integer> ids = IntStream.rangeClosed(1, animeProperties.getBatch().getMaxSize() + 1)
+                .boxed()
+                .collect(Collectors.toList());
+
+        StepVerifier.create(animeService.deleteAll(ids))
+                .expectSubscription()
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.BAD_REQUEST))
+                .verify();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).deleteByIds(any());
+    }
+
+    @Test
+    @DisplayName("updateAll updates the whole batch in one statement and reports the ids that were not found")
+    public void updateAll_ReturnsOutcomePerId_WhenSuccessful(){
+        AnimeDomain missing = AnimeDomain.builder().id(2).name("Outro anime").build();
+        BDDMockito.when(animeRepository.updateNames(List.of(AnimeCreator.createValidUpdatedAnime(), missing)))
+                .thenReturn(Flux.just(AnimeCreator.createValidUpdatedAnime().withVersion(1L)));
+
+        StepVerifier.create(animeService.updateAll(List.of(AnimeCreator.createValidUpdatedAnime(), missing)))
+                .expectSubscription()
+                .expectNext(new AnimeBatchResult(List.of(1), List.of(2)))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("updateAll returns Mono error when the same id appears twice")
+    public void updateAll_ReturnMonoError_WhenIdIsRepeated(){
+        StepVerifier.create(animeService.updateAll(List.of(AnimeCreator.createValidAnime(),
+                AnimeCreator.createValidUpdatedAnime())))
+                .expectSubscription()
+                .expectErrorMatches(error -> hasStatus(error, HttpStatus.BAD_REQUEST))
+                .verify();
+
+        BDDMockito.verify(animeRepository, BDDMockito.never()).updateNames(any());
+    }
+
+    @Test
+    @DisplayName("catalogVersion returns the catalog version read from the repository")
+    public void catalogVersion_ReturnMonoVersion_WhenSuccessful() {
+        BDDMockito.when(animeRepository.catalogVersion())
+                .thenReturn(Mono.just("42"));
+
+        StepVerifier.create(animeService.catalogVersion())
+                .expectSubscription()
+                .expectNext("42")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findAllWithVersion returns the catalog version and the catalog")
+    public void findAllWithVersion_ReturnVersionAndFluxOfAnime_WhenSuccessful() {
+        BDDMockito.when(animeRepository.catalogVersion())
+                .thenReturn(Mono.just("42"));
+
+        StepVerifier.create(animeService.findAllWithVersion())
+                .expectSubscription()
+                .assertNext(catalog -> {
+                    Assertions.assertEquals("42", catalog.getT1());
+                    StepVerifier.create(catalog.getT2())
+                            .expectNext(animeDomain)
+                            .verifyComplete();
+                })
+                .verifyComplete();
+    }
+
+    private static boolean hasStatus(Throwable error, HttpStatus status) {
+        return error instanceof ResponseStatusException && ((ResponseStatusException) error).getStatus() == status;
+    }
+
+    //enough of a transaction manager to run the synchronization callbacks around a commit or rollback
+    private static class NoOpTransactionManager extends AbstractReactiveTransactionManager {
+
+        @Override
+        protected Object doGetTransaction(TransactionSynchronizationManager synchronizationManager) {
+            return new Object();
+        }
+
+        @Override
+        protected Mono<Void> doBegin(TransactionSynchronizationManager synchronizationManager, Object transaction,
+                                     TransactionDefinition definition) {
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> doCommit(TransactionSynchronizationManager synchronizationManager,
+                                      GenericReactiveTransaction status) {
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> doRollback(TransactionSynchronizationManager synchronizationManager,
+                                        GenericReactiveTransaction status) {
+            return Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.marcosmoreira.webflux.service;
+
+import com.marcosmoreira.webflux.cache.UserDetailsCache;
+import com.marcosmoreira.webflux.config.AnimeProperties;
+import com.marcosmoreira.webflux.domain.DevDojoUserDomain;
+import com.marcosmoreira.webflux.repository.DevDojoUserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+class DevDojoUserDetailsServiceTest {
+
+    @InjectMocks
+    private DevDojoUserDetailsService devDojoUserDetailsService;
+
+    @Mock
+    private DevDojoUserRepository devDojoUserRepository;
+
+    @Spy
+    private UserDetailsCache userDetailsCache = new UserDetailsCache(new AnimeProperties(), new SimpleMeterRegistry());
+
+    private final DevDojoUserDomain user = new DevDojoUserDomain(1, "Marcos", "marcos", "{noop}devdojo",
+            "ROLE_USER,ROLE_ADMIN");
+
+    @BeforeAll
+    public static void blockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setup() {
+        BDDMockito.when(devDojoUserRepository.findByUsername("marcos"))
+                .thenReturn(Mono.just(user));
+
+        BDDMockito.when(devDojoUserRepository.findByUsername("unknown"))
+                .thenReturn(Mono.empty());
+    }
+
+    @Test
+    @DisplayName("findByUsername reads the repository once and then serves the user from the cache")
+    public void findByUsername_ServesUserFromCache_WhenCalledTwice() {
+        StepVerifier.create(devDojoUserDetailsService.findByUsername("marcos")
+                        .then(devDojoUserDetailsService.findByUsername("marcos")))
+                .expectSubscription()
+                .expectNext(user)
+                .verifyComplete();
+
+        BDDMockito.verify(devDojoUserRepository, BDDMockito.times(1)).findByUsername("marcos");
+    }
+
+    @Test
+    @DisplayName("findByUsername reads the repository again after the user was evicted from the cache")
+    public void findByUsername_ReadsRepository_WhenUserWasEvicted() {
+        StepVerifier.create(devDojoUserDetailsService.findByUsername("marcos")
+                        .doOnNext(found -> userDetailsCache.evict("marcos"))
+                        .then(devDojoUserDetailsService.findByUsername("marcos")))
+                .expectSubscription()
+                .expectNext(user)
+                .verifyComplete();
+
+        BDDMockito.verify(devDojoUserRepository, BDDMockito.times(2)).findByUsername("marcos");
+    }
+
+    @Test
+    @DisplayName("findByUsername returns empty Mono when the user does not exist")
+    public void findByUsername_ReturnEmptyMono_WhenUserDoesNotExist() {
+        StepVerifier.create(devDojoUserDetailsService.findByUsername("unknown"))
+                .expectSubscription()
+                .verifyComplete();
+    }
+}
@@ -14,6 +14,7 @@ public class AnimeCreator {
         return AnimeDomain.builder()
                 .id(1)
                 .name("Nome de um anime")
+                .version(0L)
                 .build();
     }
 
@@ -21,6 +22,7 @@ public class AnimeCreator {
         return AnimeDomain.builder()
                 .id(1)
                 .name("Nome de um anime 2")
+                .version(0L)
                 .build();
     }
 }